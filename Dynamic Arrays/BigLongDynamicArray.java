@@ -0,0 +1,163 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+/*
+*   Dynamic Array of longs indexed by long, for more than Integer.MAX_VALUE elements.
+*   The elements live in segments of SEGMENT_SIZE longs which are never copied:
+*   growing appends a new segment and at most copies the directory holding the
+*   segment references, which is SEGMENT_SIZE times smaller than the elements.
+*   A segment is 1 MB, below the size G1 allocates as a humongous object once the
+*   heap is big enough for such arrays.
+*/
+public class BigLongDynamicArray {
+    //Number of bits of the index within a segment
+    private static final int SEGMENT_SHIFT = 17;
+
+    //Number of elements of a segment
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    //SEGMENT_SIZE - 1, keeps the index within a segment
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    //Segments storing the data, the ones past the used segments are null
+    private long segments[][];
+
+    //Number of allocated segments
+    private int segmentCount = 0;
+
+    //Total elements in the array
+    private long len = 0;
+
+    public BigLongDynamicArray() {
+        this(SEGMENT_SIZE);
+    }
+
+    //Contructing a new array with a directory big enough for the passed capacity,
+    //the segments themselves are only allocated by the adds
+    public BigLongDynamicArray(long capacity) {
+        if(capacity < 0) {
+            throw new IllegalArgumentException("Illegal Capacity");
+        }
+        segments = new long[(int) Math.max(1, (capacity + SEGMENT_MASK) >>> SEGMENT_SHIFT)][];
+    }
+
+    //Returns the total number of elements in array
+    public long size() {
+        return len;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    //Returns the total capacity of the allocated segments
+    public long getCapacity() {
+        return (long) segmentCount << SEGMENT_SHIFT;
+    }
+
+    //Returns the element at a particular index
+    public long get(long index) {
+        if(index >= len || index < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        return segments[(int) (index >>> SEGMENT_SHIFT)][(int) index & SEGMENT_MASK];
+    }
+
+    //Appends a segment, doubling the directory if it is full
+    private void addSegment() {
+        if(segmentCount == segments.length) {
+            segments = Arrays.copyOf(segments, 2*segments.length);
+        }
+        segments[segmentCount++] = new long[SEGMENT_SIZE];
+    }
+
+    //Adding an element to the array
+    public void add(long elem) {
+        //Check if the last segment is full
+        if(len == getCapacity()) {
+            addSegment();
+        }
+        segments[(int) (len >>> SEGMENT_SHIFT)][(int) len & SEGMENT_MASK] = elem;
+        len++;
+    }
+
+    //Adding all the elements at the end, copied segment by segment
+    public void addAll(long[] elems) {
+        int copied = 0;
+        while(copied < elems.length) {
+            if(len == getCapacity()) {
+                addSegment();
+            }
+            int offset = (int) len & SEGMENT_MASK;
+            int n = Math.min(elems.length - copied, SEGMENT_SIZE - offset);
+            System.arraycopy(elems, copied, segments[(int) (len >>> SEGMENT_SHIFT)], offset, n);
+            copied += n;
+            len += n;
+        }
+    }
+
+    //Returns the index of an element, if not found, return -1
+    public long indexOf(long elem) {
+        for (int s = 0; (long) s << SEGMENT_SHIFT < len; s++) {
+            long segment[] = segments[s];
+            int end = (int) Math.min(SEGMENT_SIZE, len - ((long) s << SEGMENT_SHIFT));
+            for (int i = 0; i < end; i++) {
+                if(segment[i] == elem) {
+                    return ((long) s << SEGMENT_SHIFT) + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    //Calls the action on every element in order
+    public void forEach(LongConsumer action) {
+        for (int s = 0; (long) s << SEGMENT_SHIFT < len; s++) {
+            long segment[] = segments[s];
+            int end = (int) Math.min(SEGMENT_SIZE, len - ((long) s << SEGMENT_SHIFT));
+            for (int i = 0; i < end; i++) {
+                action.accept(segment[i]);
+            }
+        }
+    }
+
+    //An iterator method to iterate over the array, nextLong does not box
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            long index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < len;
+            }
+
+            @Override
+            public long nextLong() {
+                if(index >= len) {
+                    throw new NoSuchElementException();
+                }
+                long elem = segments[(int) (index >>> SEGMENT_SHIFT)][(int) index & SEGMENT_MASK];
+                index++;
+                return elem;
+            }
+        };
+    }
+
+    //Returns the String representation of the array
+    @Override
+    public String toString() {
+        if(len == 0) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("[");
+        PrimitiveIterator.OfLong it = iterator();
+        sb.append(it.nextLong());
+        while(it.hasNext()) {
+            sb.append(", ").append(it.nextLong());
+        }
+        return sb.append("]").toString();
+    }
+}
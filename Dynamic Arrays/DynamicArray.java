@@ -1,4 +1,10 @@
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /*
 *   This is an implementation of Dynamic Array like ArrayList which can resize itself.
@@ -15,16 +21,38 @@ public class DynamicArray<T> implements Iterable<T> {
     //Total capacity of the array
     private int capacity = 0;
 
+    //Decides how the capacity grows and shrinks
+    private final GrowthPolicy growthPolicy;
+
+    //The capacity never shrinks below the one passed to the constructor
+    private final int initialCapacity;
+
+    //Largest number of elements the array has held
+    private int peakSize = 0;
+
+    //Number of times the array was reallocated
+    private int resizeCount = 0;
+
     public DynamicArray() {
         this(16);
     }
 
     //Contructing a new array of the passed capacity
     public DynamicArray(int capacity) {
+        this(capacity, GrowthPolicy.doubling());
+    }
+
+    //Contructing a new array of the passed capacity, resized by the growth policy
+    public DynamicArray(int capacity, GrowthPolicy growthPolicy) {
         if(capacity < 0) {
             throw new IllegalArgumentException("Illegal Capacity");
         }
+        if(growthPolicy == null) {
+            throw new IllegalArgumentException("Illegal GrowthPolicy");
+        }
         this.capacity = capacity;
+        this.initialCapacity = capacity;
+        this.growthPolicy = growthPolicy;
         arr = (T[]) new Object[capacity];
     }
 
@@ -45,46 +73,123 @@ public class DynamicArray<T> implements Iterable<T> {
         return arr[index];
     }
 
+    //Makes room for at least minCapacity elements, growing the capacity as the
+    //growth policy says
+    public void ensureCapacity(int minCapacity) {
+        if(minCapacity > capacity) {
+            resize(Math.max(minCapacity, growthPolicy.grow(capacity, minCapacity)));
+        }
+    }
+
+    //Shrinks the capacity to the number of elements
+    public void trimToSize() {
+        if(len < capacity) {
+            resize(len);
+        }
+    }
+
+    //Shrinks the capacity after a removal as the growth policy says, but not
+    //below the initial capacity
+    private void shrink() {
+        int newCapacity = Math.max(growthPolicy.shrink(capacity, len), Math.max(len, initialCapacity));
+        if(newCapacity < capacity) {
+            resize(newCapacity);
+        }
+    }
+
+    //Copies the elements into an array of the new capacity
+    private void resize(int newCapacity) {
+        capacity = newCapacity;
+        arr = Arrays.copyOf(arr, capacity);
+        resizeCount++;
+    }
+
+    //Returns the total capacity of the array
+    public int getCapacity() {
+        return capacity;
+    }
+
+    //Returns the number of allocated slots holding no element
+    public int getSlack() {
+        return capacity - len;
+    }
+
+    //Returns the largest number of elements the array has held
+    public int getPeakSize() {
+        return peakSize;
+    }
+
+    //Returns the number of times the array was reallocated
+    public int getResizeCount() {
+        return resizeCount;
+    }
+
     //Adding an element to the array
     public void add(T elem) {
         //Check if the array has reached the total capacity
         if(len == capacity) {
-            //Resize
-            //Creates a temp array of double the capacity of the original array
-            T temp[] = (T[]) new Object[2*capacity];
-            //Copy the original array to the temp array
-            for (int i = 0; i < capacity; i++) {
-                temp[i] = arr[i];
-            }
-            //Set the new capacity of the array
-            capacity *= 2;
-            //Copy back to the original array
-            //arr has extra nulls padded.
-            arr = temp;
+            ensureCapacity(len + 1);
         }
         //Add the element to the array
         arr[len] = elem;
         //Increase the total number of element by 1 
         len++;
+        peakSize = Math.max(peakSize, len);
     }
 
-    //Adding element to a specified index
+    //Adding element to a specified index, the following elements move one index up
     public void add(T elem, int index) {
-        if(index < 0) {
+        if(index > len || index < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureCapacity(len + 1);
+        System.arraycopy(arr, index, arr, index + 1, len - index);
+        arr[index] = elem;
+        len++;
+        peakSize = Math.max(peakSize, len);
+    }
+
+    //Adding all the elements at the end, with a single capacity check and copy
+    public void addAll(T[] elems) {
+        ensureCapacity(len + elems.length);
+        System.arraycopy(elems, 0, arr, len, elems.length);
+        len += elems.length;
+        peakSize = Math.max(peakSize, len);
+    }
+
+    //Adding all the elements of the collection at the end
+    public void addAll(Collection<? extends T> elems) {
+        addAll((T[]) elems.toArray());
+    }
+
+    //Adding the elements at a specified index, the following elements move up
+    public void insertRange(int index, T[] elems) {
+        if(index > len || index < 0) {
             throw new IndexOutOfBoundsException();
         }
-        //Calls add method if the array has reached the capacity.
-        if(index == capacity) {
-            add(elem);
-        } else {
-            arr[index] = elem;
-            len++;
+        ensureCapacity(len + elems.length);
+        System.arraycopy(arr, index, arr, index + elems.length, len - index);
+        System.arraycopy(elems, 0, arr, index, elems.length);
+        len += elems.length;
+        peakSize = Math.max(peakSize, len);
+    }
+
+    //Removing the elements from index fromIndex, inclusive, to toIndex, exclusive
+    public void removeRange(int fromIndex, int toIndex) {
+        if(fromIndex < 0 || toIndex > len || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException();
         }
+        System.arraycopy(arr, toIndex, arr, fromIndex, len - toIndex);
+        //Clears the references left behind so they can be garbage collected
+        int newLen = len - (toIndex - fromIndex);
+        Arrays.fill(arr, newLen, len, null);
+        len = newLen;
+        shrink();
     }
 
     //Returns the index of an element, if not found, return -1
     public int indexOf(Object obj) {
-        for (int i = 0; i < len + 1; i++) {
+        for (int i = 0; i < len; i++) {
             //If the object passed is null
             if(obj == null) {
                 if(arr[i] == null) {
@@ -117,6 +222,23 @@ public class DynamicArray<T> implements Iterable<T> {
         };
     }
 
+    //Returns a Spliterator over the elements, sized exactly and splitting in halves
+    //of the array, so a parallel stream gets balanced work without copying
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliterator(arr, 0, len, Spliterator.ORDERED);
+    }
+
+    //Returns a sequential Stream over the elements
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    //Returns a parallel Stream over the elements
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
     //Returns the String representation of the array 
     @Override
     public String toString() {
@@ -125,9 +247,9 @@ public class DynamicArray<T> implements Iterable<T> {
         } 
         StringBuilder sb = new StringBuilder(len);
         sb.append("[");
-        for (int i = 0; i < len; i++) {
+        for (int i = 0; i < len - 1; i++) {
             sb.append(arr[i] + ", ");
         }
-        return sb.append(arr[len] + "]").toString();
+        return sb.append(arr[len - 1] + "]").toString();
     }    
 }
\ No newline at end of file
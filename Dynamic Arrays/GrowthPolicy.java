@@ -0,0 +1,73 @@
+/*
+*   Decides how much a dynamic array grows when it is full and how much it shrinks
+*   after removals.
+*/
+public interface GrowthPolicy {
+    //Largest array most JVMs can allocate
+    int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    //Returns the new capacity of an array which needs room for minCapacity elements
+    int grow(int capacity, int minCapacity);
+
+    //Returns the capacity an array of size elements should shrink to, or capacity to keep it.
+    //By default an array at most a quarter full shrinks to twice its size, so it has to
+    //double again before it grows and halve again before it shrinks: adds and removes
+    //around one size do not resize every time.
+    default int shrink(int capacity, int size) {
+        return size <= capacity / 4 ? 2 * size : capacity;
+    }
+
+    //Doubles the capacity, the default
+    static GrowthPolicy doubling() {
+        return (capacity, minCapacity) -> (int) Math.max(minCapacity, Math.min(MAX_CAPACITY, 2L * capacity));
+    }
+
+    //Grows the capacity by half, like java.util.ArrayList: more copies, less slack
+    static GrowthPolicy oneAndHalf() {
+        return (capacity, minCapacity) -> (int) Math.max(minCapacity, Math.min(MAX_CAPACITY, capacity + (long) (capacity >> 1)));
+    }
+
+    //Grows the capacity by chunk elements, so the slack never exceeds chunk after a growth.
+    //Adds copy the array every chunk elements, which costs O(n^2 / chunk) for n adds.
+    static GrowthPolicy fixedChunk(int chunk) {
+        if(chunk <= 0) {
+            throw new IllegalArgumentException("Illegal chunk");
+        }
+        return new GrowthPolicy() {
+            @Override
+            public int grow(int capacity, int minCapacity) {
+                return (int) Math.max(minCapacity, Math.min(MAX_CAPACITY, (long) capacity + chunk));
+            }
+
+            @Override
+            public int shrink(int capacity, int size) {
+                return capacity - size > 2 * (long) chunk ? size + chunk : capacity;
+            }
+        };
+    }
+
+    //Caps the slack of the policy at maxSlack elements: a growth reserves at most
+    //maxSlack free slots and an array with more than twice maxSlack free slots
+    //shrinks to maxSlack free slots
+    static GrowthPolicy capped(GrowthPolicy policy, int maxSlack) {
+        if(maxSlack < 0) {
+            throw new IllegalArgumentException("Illegal maxSlack");
+        }
+        return new GrowthPolicy() {
+            @Override
+            public int grow(int capacity, int minCapacity) {
+                long cap = Math.max(minCapacity, (long) capacity + maxSlack);
+                return (int) Math.min(policy.grow(capacity, minCapacity), Math.min(MAX_CAPACITY, cap));
+            }
+
+            @Override
+            public int shrink(int capacity, int size) {
+                int newCapacity = policy.shrink(capacity, size);
+                if(newCapacity - size > 2 * (long) maxSlack) {
+                    return size + maxSlack;
+                }
+                return newCapacity;
+            }
+        };
+    }
+}
@@ -0,0 +1,268 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/*
+*   Dynamic Array of ints, like DynamicArray<Integer> but backed by an int[].
+*   An element takes 4 bytes instead of a reference to an Integer object, and no
+*   method boxes. It is not Iterable, since Iterable<Integer> would bring a boxing
+*   forEach whose overload makes forEach(x -> ...) ambiguous.
+*/
+public class IntDynamicArray {
+    //Array to store data
+    private int arr[];
+
+    //Total elements in the array
+    private int len = 0;
+
+    //Total capacity of the array
+    private int capacity = 0;
+
+    //Decides how the capacity grows and shrinks
+    private final GrowthPolicy growthPolicy;
+
+    //The capacity never shrinks below the one passed to the constructor
+    private final int initialCapacity;
+
+    //Largest number of elements the array has held
+    private int peakSize = 0;
+
+    //Number of times the array was reallocated
+    private int resizeCount = 0;
+
+    public IntDynamicArray() {
+        this(16);
+    }
+
+    //Contructing a new array of the passed capacity
+    public IntDynamicArray(int capacity) {
+        this(capacity, GrowthPolicy.doubling());
+    }
+
+    //Contructing a new array of the passed capacity, resized by the growth policy
+    public IntDynamicArray(int capacity, GrowthPolicy growthPolicy) {
+        if(capacity < 0) {
+            throw new IllegalArgumentException("Illegal Capacity");
+        }
+        if(growthPolicy == null) {
+            throw new IllegalArgumentException("Illegal GrowthPolicy");
+        }
+        this.capacity = capacity;
+        this.initialCapacity = capacity;
+        this.growthPolicy = growthPolicy;
+        arr = new int[capacity];
+    }
+
+    //Returns the total number of elements in array
+    public int size() {
+        return len;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    //Returns the element at a particular index
+    public int get(int index) {
+        if(index >= len || index < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        return arr[index];
+    }
+
+    //Makes room for at least minCapacity elements, growing the capacity as the
+    //growth policy says
+    public void ensureCapacity(int minCapacity) {
+        if(minCapacity > capacity) {
+            resize(Math.max(minCapacity, growthPolicy.grow(capacity, minCapacity)));
+        }
+    }
+
+    //Shrinks the capacity to the number of elements
+    public void trimToSize() {
+        if(len < capacity) {
+            resize(len);
+        }
+    }
+
+    //Shrinks the capacity after a removal as the growth policy says, but not
+    //below the initial capacity
+    private void shrink() {
+        int newCapacity = Math.max(growthPolicy.shrink(capacity, len), Math.max(len, initialCapacity));
+        if(newCapacity < capacity) {
+            resize(newCapacity);
+        }
+    }
+
+    //Copies the elements into an array of the new capacity
+    private void resize(int newCapacity) {
+        capacity = newCapacity;
+        arr = Arrays.copyOf(arr, capacity);
+        resizeCount++;
+    }
+
+    //Returns the total capacity of the array
+    public int getCapacity() {
+        return capacity;
+    }
+
+    //Returns the number of allocated slots holding no element
+    public int getSlack() {
+        return capacity - len;
+    }
+
+    //Returns the largest number of elements the array has held
+    public int getPeakSize() {
+        return peakSize;
+    }
+
+    //Returns the number of times the array was reallocated
+    public int getResizeCount() {
+        return resizeCount;
+    }
+
+    //Adding an element to the array
+    public void add(int elem) {
+        //Check if the array has reached the total capacity
+        if(len == capacity) {
+            ensureCapacity(len + 1);
+        }
+        arr[len] = elem;
+        len++;
+        peakSize = Math.max(peakSize, len);
+    }
+
+    //Adding element to a specified index, the following elements move one index up
+    public void add(int elem, int index) {
+        if(index > len || index < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureCapacity(len + 1);
+        System.arraycopy(arr, index, arr, index + 1, len - index);
+        arr[index] = elem;
+        len++;
+        peakSize = Math.max(peakSize, len);
+    }
+
+    //Adding all the elements at the end, with a single capacity check and copy
+    public void addAll(int[] elems) {
+        ensureCapacity(len + elems.length);
+        System.arraycopy(elems, 0, arr, len, elems.length);
+        len += elems.length;
+        peakSize = Math.max(peakSize, len);
+    }
+
+    //Adding the elements at a specified index, the following elements move up
+    public void insertRange(int index, int[] elems) {
+        if(index > len || index < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureCapacity(len + elems.length);
+        System.arraycopy(arr, index, arr, index + elems.length, len - index);
+        System.arraycopy(elems, 0, arr, index, elems.length);
+        len += elems.length;
+        peakSize = Math.max(peakSize, len);
+    }
+
+    //Removing the elements from index fromIndex, inclusive, to toIndex, exclusive
+    public void removeRange(int fromIndex, int toIndex) {
+        if(fromIndex < 0 || toIndex > len || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException();
+        }
+        System.arraycopy(arr, toIndex, arr, fromIndex, len - toIndex);
+        len -= toIndex - fromIndex;
+        shrink();
+    }
+
+    //Sets every element to the value
+    public void fill(int value) {
+        Arrays.fill(arr, 0, len, value);
+    }
+
+    //Returns the sum of the elements, as a long so it cannot overflow.
+    //Like min and max it is a counted loop without early exit over the array,
+    //the shape the JIT unrolls and, where it supports the reduction, vectorizes.
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < len; i++) {
+            sum += arr[i];
+        }
+        return sum;
+    }
+
+    //Returns the smallest element, throws NoSuchElementException if the array is empty
+    public int min() {
+        if(len == 0) {
+            throw new NoSuchElementException();
+        }
+        int min = arr[0];
+        for (int i = 1; i < len; i++) {
+            min = Math.min(min, arr[i]);
+        }
+        return min;
+    }
+
+    //Returns the largest element, throws NoSuchElementException if the array is empty
+    public int max() {
+        if(len == 0) {
+            throw new NoSuchElementException();
+        }
+        int max = arr[0];
+        for (int i = 1; i < len; i++) {
+            max = Math.max(max, arr[i]);
+        }
+        return max;
+    }
+
+    //Returns the index of an element, if not found, return -1
+    public int indexOf(int elem) {
+        for (int i = 0; i < len; i++) {
+            if(arr[i] == elem) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //Calls the action on every element in order
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < len; i++) {
+            action.accept(arr[i]);
+        }
+    }
+
+    //An iterator method to iterate over the array, nextInt does not box
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < len;
+            }
+
+            @Override
+            public int nextInt() {
+                if(index >= len) {
+                    throw new NoSuchElementException();
+                }
+                return arr[index++];
+            }
+        };
+    }
+
+    //Returns the String representation of the array
+    @Override
+    public String toString() {
+        if(len == 0) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder(len);
+        sb.append("[");
+        for (int i = 0; i < len - 1; i++) {
+            sb.append(arr[i]).append(", ");
+        }
+        return sb.append(arr[len - 1]).append("]").toString();
+    }
+}
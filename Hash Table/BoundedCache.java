@@ -0,0 +1,591 @@
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
+
+/*
+* Cache holding at most maxWeight worth of entries, evicting the least valuable
+* ones according to its policy. Every entry weighs 1 unless a weigher is given,
+* in which case maxWeight can be a number of bytes or any other measure.
+*
+* The keys map to their list nodes in a LinearProbingHashTable, and the nodes
+* are linked directly into the recency lists, so a hit moves its entry in O(1)
+* instead of searching a list for it. The policies are
+*
+* LRU: a single list in access order, the least recently used entry is evicted.
+* CLOCK: a hit only sets a referenced bit. A hand sweeps the entries in insertion
+* order, clearing the bits, and evicts the first entry it finds unreferenced.
+* Hits never relink anything, which makes them cheaper than under LRU.
+* W_TINY_LFU: new entries go through a small LRU window into a segmented LRU
+* (probation and protected). An entry leaving the window only stays if it was
+* used more often than the entry it would push out, as estimated by a count-min
+* sketch of recent accesses. It keeps frequently used entries through scans and
+* bursts of one-off keys which flush an LRU cache.
+*
+* The cache is not thread safe, guard it with a lock when it is shared.
+*/
+@SuppressWarnings("unchecked")
+public class BoundedCache<K, V> {
+    public enum Policy {
+        LRU, CLOCK, W_TINY_LFU
+    }
+
+    // Lists a W_TINY_LFU entry can be in
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    // Share of maxWeight given to the W_TINY_LFU window, in percent
+    private static final int WINDOW_PERCENT = 1;
+
+    // Share of the W_TINY_LFU main space given to the protected list, in percent
+    private static final int PROTECTED_PERCENT = 80;
+
+    // Internal class representing an entry, linked into one of the lists
+    private static class Node<K, V> {
+        private final K key;
+        private V value;
+        private int weight;
+
+        // Set by a hit, cleared by the CLOCK hand
+        private boolean referenced;
+
+        // WINDOW, PROBATION or PROTECTED
+        private byte queue;
+
+        private Node<K, V> previous;
+        private Node<K, V> next;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /*
+    * Circular doubly linked list with a sentinel, the first node is the most recent
+    */
+    private static class AccessList<K, V> {
+        private final Node<K, V> sentinel = new Node<>(null, null, 0);
+
+        // Total weight of the nodes in the list
+        private long weight;
+
+        AccessList() {
+            sentinel.previous = sentinel.next = sentinel;
+        }
+
+        boolean isEmpty() {
+            return sentinel.next == sentinel;
+        }
+
+        Node<K, V> first() {
+            return sentinel.next == sentinel ? null : sentinel.next;
+        }
+
+        Node<K, V> last() {
+            return sentinel.previous == sentinel ? null : sentinel.previous;
+        }
+
+        void addFirst(Node<K, V> node) {
+            addBefore(sentinel.next, node);
+        }
+
+        void addLast(Node<K, V> node) {
+            addBefore(sentinel, node);
+        }
+
+        void addBefore(Node<K, V> at, Node<K, V> node) {
+            node.previous = at.previous;
+            node.next = at;
+            at.previous.next = node;
+            at.previous = node;
+            weight += node.weight;
+        }
+
+        void remove(Node<K, V> node) {
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            node.previous = node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToFront(Node<K, V> node) {
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            node.previous = sentinel;
+            node.next = sentinel.next;
+            sentinel.next.previous = node;
+            sentinel.next = node;
+        }
+
+        /*
+        * Returns the node after the specified one, wrapping around past the last node
+        */
+        Node<K, V> after(Node<K, V> node) {
+            Node<K, V> next = node.next;
+            return next == sentinel ? sentinel.next : next;
+        }
+
+        void clear() {
+            sentinel.previous = sentinel.next = sentinel;
+            weight = 0;
+        }
+    }
+
+    /*
+    * Count-min sketch estimating how often each key was accessed recently. Every
+    * key has one 4 bit counter in each of 4 rows. The estimate is the smallest of
+    * them, since other keys can only make a counter larger. All counters are
+    * halved every sampleSize accesses, so old popularity fades.
+    */
+    private static class FrequencySketch {
+        private static final int MAX_COUNT = 15;
+
+        private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+        };
+
+        // 16 counters of 4 bits per long
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int accesses;
+
+        FrequencySketch(long expectedKeys) {
+            int counters = (int) Math.max(64, Math.min(1 << 22, Long.highestOneBit(Math.max(1, expectedKeys) - 1) << 2));
+            table = new long[counters >>> 4];
+            mask = counters - 1;
+            sampleSize = counters * 10 / 4;
+        }
+
+        private int index(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        int frequency(Object key) {
+            int hash = key.hashCode();
+            int min = MAX_COUNT;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int i = index(hash, row);
+                min = Math.min(min, (int) (table[i >>> 4] >>> ((i & 15) << 2)) & MAX_COUNT);
+            }
+            return min;
+        }
+
+        void increment(Object key) {
+            int hash = key.hashCode();
+            for (int row = 0; row < SEEDS.length; row++) {
+                int i = index(hash, row);
+                int shift = (i & 15) << 2;
+                if (((table[i >>> 4] >>> shift) & MAX_COUNT) != MAX_COUNT) {
+                    table[i >>> 4] += 1L << shift;
+                }
+            }
+
+            if (++accesses == sampleSize) {
+                // Halve every counter: shift the whole word and drop the bit each
+                // counter received from its neighbour
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+                }
+                accesses /= 2;
+            }
+        }
+    }
+
+    // The policy deciding which entry is evicted
+    private final Policy policy;
+
+    // The largest total weight the cache can hold
+    private final long maxWeight;
+
+    // Returns the weight of an entry
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+
+    // Maps every key to its node
+    private final LinearProbingHashTable<K, Node<K, V>> nodes;
+
+    // Access order for LRU, insertion order for CLOCK, window for W_TINY_LFU
+    private final AccessList<K, V> window = new AccessList<>();
+
+    // Segmented LRU of W_TINY_LFU
+    private final AccessList<K, V> probation = new AccessList<>();
+    private final AccessList<K, V> protectedList = new AccessList<>();
+
+    // The next node the CLOCK hand looks at, null when the cache is empty
+    private Node<K, V> hand;
+
+    // Access frequencies for W_TINY_LFU, null for the other policies
+    private final FrequencySketch sketch;
+
+    // Statistics
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public BoundedCache(long maxWeight) {
+        this(maxWeight, Policy.LRU);
+    }
+
+    public BoundedCache(long maxWeight, Policy policy) {
+        this(maxWeight, policy, (key, value) -> 1);
+    }
+
+    public BoundedCache(long maxWeight, Policy policy, ToIntBiFunction<? super K, ? super V> weigher) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("Illegal maxWeight");
+        }
+
+        if (policy == null) {
+            throw new IllegalArgumentException("Illegal policy");
+        }
+
+        if (weigher == null) {
+            throw new IllegalArgumentException("Illegal weigher");
+        }
+
+        this.maxWeight = maxWeight;
+        this.policy = policy;
+        this.weigher = weigher;
+        nodes = new LinearProbingHashTable<>(16, 0.5, true);
+        sketch = policy == Policy.W_TINY_LFU ? new FrequencySketch(maxWeight) : null;
+    }
+
+    /*
+    * Returns the number of entries in the cache
+    */
+    public int size() {
+        return nodes.size();
+    }
+
+    /*
+    * Returns true if the cache is empty, otherwise, false
+    */
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    /*
+    * Returns the total weight of the entries in the cache
+    */
+    public long weight() {
+        return window.weight + probation.weight + protectedList.weight;
+    }
+
+    /*
+    * Returns the largest total weight the cache can hold
+    */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /*
+    * Returns the eviction policy
+    */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /*
+    * Returns the number of gets which found their key
+    */
+    public long hitCount() {
+        return hitCount;
+    }
+
+    /*
+    * Returns the number of gets which did not find their key
+    */
+    public long missCount() {
+        return missCount;
+    }
+
+    /*
+    * Returns the share of gets which found their key, 0 before the first get
+    */
+    public double hitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 0 : (double) hitCount / requests;
+    }
+
+    /*
+    * Returns the number of entries evicted to respect maxWeight
+    */
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    /*
+    * Returns true if the cache contains the key, otherwise, false. Neither the
+    * statistics nor the eviction order are affected.
+    */
+    public boolean containsKey(K key) {
+        return nodes.containsKey(key);
+    }
+
+    /*
+    * Returns the value of the key if it is cached. Otherwise, returns null.
+    */
+    public V get(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+
+        Node<K, V> node = nodes.get(key);
+        if (node == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        onAccess(node);
+        return node.value;
+    }
+
+    /*
+    * Returns the value of the key, loading and caching it on a miss. Null values
+    * returned by the loader are not cached.
+    */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /*
+    * Adds or replaces the value of the key and returns the old value, or null.
+    * Entries are evicted until the total weight fits again. An entry heavier than
+    * maxWeight is evicted right away, along with the old value of its key, and
+    * no other entry is evicted for it.
+    */
+    public V put(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+
+        if (value == null) {
+            throw new IllegalArgumentException("Illegal value");
+        }
+
+        int weight = weigher.applyAsInt(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Illegal weight");
+        }
+
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+
+        Node<K, V> node = nodes.get(key);
+        if (weight > maxWeight) {
+            evictionCount++;
+            if (node == null) {
+                return null;
+            }
+            nodes.remove(key);
+            unlink(node);
+            return node.value;
+        }
+
+        if (node != null) {
+            V oldValue = node.value;
+            // Relink the node so that its list accounts for the new weight
+            AccessList<K, V> list = listOf(node);
+            Node<K, V> next = node.next;
+            list.remove(node);
+            node.value = value;
+            node.weight = weight;
+            list.addBefore(next, node);
+            onAccess(node);
+            evict();
+            return oldValue;
+        }
+
+        node = new Node<>(key, value, weight);
+        nodes.put(key, node);
+        if (policy == Policy.CLOCK) {
+            // Behind the hand, so the new entry is the last one the hand reaches
+            if (hand == null) {
+                window.addLast(node);
+                hand = node;
+            } else {
+                window.addBefore(hand, node);
+            }
+        } else {
+            node.queue = WINDOW;
+            window.addFirst(node);
+        }
+        evict();
+        return null;
+    }
+
+    /*
+    * Removes the key and returns its value, or null if it was not cached
+    */
+    public V remove(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+
+        Node<K, V> node = nodes.remove(key);
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        return node.value;
+    }
+
+    /*
+    * Removes every entry, the statistics are kept
+    */
+    public void clear() {
+        nodes.clear();
+        window.clear();
+        probation.clear();
+        protectedList.clear();
+        hand = null;
+    }
+
+    private AccessList<K, V> listOf(Node<K, V> node) {
+        if (policy != Policy.W_TINY_LFU || node.queue == WINDOW) {
+            return window;
+        }
+        return node.queue == PROBATION ? probation : protectedList;
+    }
+
+    /*
+    * Helper method which removes the node from its list
+    */
+    private void unlink(Node<K, V> node) {
+        if (node == hand) {
+            hand = window.after(node);
+            if (hand == node) {
+                hand = null;
+            }
+        }
+        listOf(node).remove(node);
+    }
+
+    /*
+    * Helper method which records a hit on the node according to the policy
+    */
+    private void onAccess(Node<K, V> node) {
+        switch (policy) {
+            case LRU:
+                window.moveToFront(node);
+                break;
+            case CLOCK:
+                node.referenced = true;
+                break;
+            default:
+                if (node.queue == PROBATION) {
+                    // A second hit makes the entry protected
+                    probation.remove(node);
+                    node.queue = PROTECTED;
+                    protectedList.addFirst(node);
+                    demoteProtected();
+                } else {
+                    listOf(node).moveToFront(node);
+                }
+                break;
+        }
+    }
+
+    /*
+    * Helper method which moves the least recently used protected entries back to
+    * probation while the protected list is over its share
+    */
+    private void demoteProtected() {
+        long maxProtected = (maxWeight - maxWindow()) * PROTECTED_PERCENT / 100;
+        while (protectedList.weight > maxProtected && !protectedList.isEmpty()) {
+            Node<K, V> node = protectedList.last();
+            protectedList.remove(node);
+            node.queue = PROBATION;
+            probation.addFirst(node);
+        }
+    }
+
+    private long maxWindow() {
+        return Math.max(1, maxWeight * WINDOW_PERCENT / 100);
+    }
+
+    /*
+    * Helper method which evicts entries until the total weight fits
+    */
+    private void evict() {
+        if (policy == Policy.W_TINY_LFU) {
+            // Entries leaving the window become candidates for the main space
+            while (window.weight > maxWindow() && !window.isEmpty()) {
+                Node<K, V> node = window.last();
+                window.remove(node);
+                node.queue = PROBATION;
+                probation.addFirst(node);
+            }
+        }
+
+        while (weight() > maxWeight) {
+            Node<K, V> victim = victim();
+            nodes.remove(victim.key);
+            unlink(victim);
+            evictionCount++;
+        }
+    }
+
+    /*
+    * Returns the entry to be evicted next
+    */
+    private Node<K, V> victim() {
+        switch (policy) {
+            case LRU:
+                return window.last();
+            case CLOCK:
+                // Give every referenced entry a second chance
+                while (hand.referenced) {
+                    hand.referenced = false;
+                    hand = window.after(hand);
+                }
+                return hand;
+            default:
+                if (probation.isEmpty()) {
+                    return protectedList.isEmpty() ? window.last() : protectedList.last();
+                }
+                // The newest probation entry only stays if it is used more often
+                // than the oldest one
+                Node<K, V> candidate = probation.first();
+                Node<K, V> victim = probation.last();
+                if (candidate != victim && sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                    return victim;
+                }
+                return candidate;
+        }
+    }
+
+    /*
+    * Returns the String representation of the cache
+    */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        appendEntries(sb, window);
+        appendEntries(sb, probation);
+        appendEntries(sb, protectedList);
+        sb.append("}");
+        return sb.toString();
+    }
+
+    private static <K, V> void appendEntries(StringBuilder sb, AccessList<K, V> list) {
+        for (Node<K, V> node = list.first(); node != null && node != list.sentinel; node = node.next) {
+            sb.append(node.key + " : " + node.value + ", ");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+* Encodes keys or values of type T for the hash table snapshots.
+*
+* write gets a buffer with at least maxSize(value) bytes remaining and read gets
+* a buffer whose remaining bytes are exactly the bytes written for one value.
+* Codecs with a fixedSize are stored as is, the others are prefixed by their
+* length in the snapshot.
+*/
+public interface Codec<T> {
+    /*
+    * Returns an upper bound of the number of bytes write needs for the value
+    */
+    int maxSize(T value);
+
+    /*
+    * Encodes the value at the position of the buffer
+    */
+    void write(T value, ByteBuffer buffer);
+
+    /*
+    * Decodes a value from the remaining bytes of the buffer
+    */
+    T read(ByteBuffer buffer);
+
+    /*
+    * Returns the number of bytes of every encoded value, or -1 if it varies
+    */
+    default int fixedSize() {
+        return -1;
+    }
+
+    /*
+    * Returns a codec writing Integers as 4 bytes
+    */
+    static Codec<Integer> ints() {
+        return new Codec<Integer>() {
+            public int maxSize(Integer value) {
+                return Integer.BYTES;
+            }
+
+            public void write(Integer value, ByteBuffer buffer) {
+                buffer.putInt(value);
+            }
+
+            public Integer read(ByteBuffer buffer) {
+                return buffer.getInt();
+            }
+
+            public int fixedSize() {
+                return Integer.BYTES;
+            }
+        };
+    }
+
+    /*
+    * Returns a codec writing Longs as 8 bytes
+    */
+    static Codec<Long> longs() {
+        return new Codec<Long>() {
+            public int maxSize(Long value) {
+                return Long.BYTES;
+            }
+
+            public void write(Long value, ByteBuffer buffer) {
+                buffer.putLong(value);
+            }
+
+            public Long read(ByteBuffer buffer) {
+                return buffer.getLong();
+            }
+
+            public int fixedSize() {
+                return Long.BYTES;
+            }
+        };
+    }
+
+    /*
+    * Returns a codec writing Doubles as 8 bytes
+    */
+    static Codec<Double> doubles() {
+        return new Codec<Double>() {
+            public int maxSize(Double value) {
+                return Double.BYTES;
+            }
+
+            public void write(Double value, ByteBuffer buffer) {
+                buffer.putDouble(value);
+            }
+
+            public Double read(ByteBuffer buffer) {
+                return buffer.getDouble();
+            }
+
+            public int fixedSize() {
+                return Double.BYTES;
+            }
+        };
+    }
+
+    /*
+    * Returns a codec writing Strings in UTF-8
+    */
+    static Codec<String> strings() {
+        return new Codec<String>() {
+            public int maxSize(String value) {
+                // A char takes at most 3 bytes, a surrogate pair 4 bytes for 2 chars
+                return 3 * value.length();
+            }
+
+            public void write(String value, ByteBuffer buffer) {
+                buffer.put(value.getBytes(StandardCharsets.UTF_8));
+            }
+
+            public String read(ByteBuffer buffer) {
+                return StandardCharsets.UTF_8.decode(buffer).toString();
+            }
+        };
+    }
+}
@@ -0,0 +1,557 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+* Thread safe version of HashTableSeparateChaining.
+*
+* - Reads take no lock. Buckets and the links between entries are read with
+*   volatile semantics, so a reader always sees a consistent chain.
+* - An empty bucket is filled with a single CAS. Any other change to a bucket
+*   locks the first entry of that bucket only, so threads working on different
+*   buckets never wait for each other.
+* - Resizing is incremental. Buckets are moved to the new table a few at a
+*   time, and every thread which writes while a resize is running moves one
+*   stride of buckets before returning. A moved bucket is replaced by a
+*   forwarding entry which sends readers and writers to the new table.
+*/
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class ConcurrentHashTableSeparateChaining<K, V> {
+    private static final int DEFAUT_CAPACITY = 4;
+    private static final double DEFAUT_LOAD_FACTOR = 0.75;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    // Number of buckets moved by a thread each time it helps a resize
+    private static final int TRANSFER_STRIDE = 16;
+
+    // Hash of forwarding entries, normal hashes are never negative
+    private static final int MOVED = -1;
+
+    private static final VarHandle BUCKET = MethodHandles.arrayElementVarHandle(Node[].class);
+    private static final VarHandle SIZE_CTL;
+
+    static {
+        try {
+            SIZE_CTL = MethodHandles.lookup().findVarHandle(ConcurrentHashTableSeparateChaining.class, "sizeCtl",
+                    int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Entry of a bucket's chain
+    private static class Node<K, V> {
+        final int hash;
+        final K key;
+        volatile V value;
+        volatile Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    // Placed in a bucket of the old table once the bucket has been moved
+    private static final class ForwardingNode<K, V> extends Node<K, V> {
+        final Node<K, V>[] nextTable;
+
+        ForwardingNode(Node<K, V>[] nextTable) {
+            super(MOVED, null, null, null);
+            this.nextTable = nextTable;
+        }
+    }
+
+    // State of a running resize
+    private static final class Transfer<K, V> {
+        final Node<K, V>[] from;
+        final Node<K, V>[] to;
+        final ForwardingNode<K, V> forward;
+        // Buckets below this index have not been claimed yet
+        final AtomicInteger nextBucket;
+        // Number of buckets already moved
+        final AtomicInteger moved = new AtomicInteger();
+
+        Transfer(Node<K, V>[] from, Node<K, V>[] to) {
+            this.from = from;
+            this.to = to;
+            this.forward = new ForwardingNode<>(to);
+            this.nextBucket = new AtomicInteger(from.length);
+        }
+    }
+
+    // Changing load factor
+    private final double maxLoadFactor;
+
+    // Hash table represented by chains of entries
+    private volatile Node<K, V>[] table;
+
+    // The resize running at the moment, or null
+    private volatile Transfer<K, V> transfer;
+
+    // The threshold of the next resize, or -1 while a resize is running
+    private volatile int sizeCtl;
+
+    // Total number of (k, v) pair in the hash table.
+    private final LongAdder size = new LongAdder();
+
+    public ConcurrentHashTableSeparateChaining() {
+        this(DEFAUT_CAPACITY, DEFAUT_LOAD_FACTOR);
+    }
+
+    public ConcurrentHashTableSeparateChaining(int capacity) {
+        this(capacity, DEFAUT_LOAD_FACTOR);
+    }
+
+    public ConcurrentHashTableSeparateChaining(int capacity, double maxLoadFactor) {
+        if (capacity < 0 || capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Illegal capacity");
+        }
+
+        if (maxLoadFactor <= 0) {
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        }
+
+        this.maxLoadFactor = maxLoadFactor;
+        int n = Integer.highestOneBit(Math.max(DEFAUT_CAPACITY, capacity) - 1) << 1;
+        table = (Node<K, V>[]) new Node[n];
+        sizeCtl = (int) (n * maxLoadFactor);
+    }
+
+    /*
+    * Returns the hash used to find the bucket. The high bits are folded in since
+    * the capacity is a power of 2, and the sign bit is cleared as negative hashes
+    * are reserved for forwarding entries.
+    */
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) & 0x7FFFFFFF;
+    }
+
+    private static <K, V> Node<K, V> bucketAt(Node<K, V>[] tab, int i) {
+        return (Node<K, V>) BUCKET.getVolatile(tab, i);
+    }
+
+    private static <K, V> boolean casBucket(Node<K, V>[] tab, int i, Node<K, V> expected, Node<K, V> node) {
+        return BUCKET.compareAndSet(tab, i, expected, node);
+    }
+
+    private static <K, V> void setBucket(Node<K, V>[] tab, int i, Node<K, V> node) {
+        BUCKET.setVolatile(tab, i, node);
+    }
+
+    /*
+    * Returns true if the hash table is empty, otherwise, false
+    */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /*
+    * Returns the size of the hash table. The value is exact only when no other
+    * thread is modifying the table.
+    */
+    public int size() {
+        long n = size.sum();
+        return n < 0 ? 0 : (n > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) n);
+    }
+
+    /*
+    * Removes every key-value pair. Pairs added by other threads while the table
+    * is being cleared may or may not be removed.
+    */
+    public void clear() {
+        Node<K, V>[] tab = table;
+        for (int i = 0; i < tab.length;) {
+            Node<K, V> f = bucketAt(tab, i);
+            if (f == null) {
+                i++;
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer((ForwardingNode<K, V>) f, true);
+                i = 0;
+            } else {
+                synchronized (f) {
+                    if (bucketAt(tab, i) == f) {
+                        long removed = 0;
+                        for (Node<K, V> e = f; e != null; e = e.next) {
+                            removed++;
+                        }
+                        setBucket(tab, i, null);
+                        size.add(-removed);
+                        i++;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+    * Returns true if the specified key is present in the hash table, otherwise
+    * false
+    */
+    public boolean hasKey(K key) {
+        return seekEntry(key) != null;
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns null.
+    */
+    public V get(K key) {
+        Node<K, V> entry = seekEntry(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /*
+    * Helper method to get the entry of a key without locking
+    */
+    private Node<K, V> seekEntry(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+
+        final int h = spread(key.hashCode());
+        Node<K, V>[] tab = table;
+        Node<K, V> e = bucketAt(tab, (tab.length - 1) & h);
+        while (e != null) {
+            if (e.hash == MOVED) {
+                // The bucket has been moved, continue in the new table
+                tab = ((ForwardingNode<K, V>) e).nextTable;
+                e = bucketAt(tab, (tab.length - 1) & h);
+            } else if (e.hash == h && key.equals(e.key)) {
+                return e;
+            } else {
+                e = e.next;
+            }
+        }
+        return null;
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V put(K key, V value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V add(K key, V value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V insert(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+
+        final int h = spread(key.hashCode());
+        int binCount;
+
+        for (Node<K, V>[] tab = table;;) {
+            int i = (tab.length - 1) & h;
+            Node<K, V> f = bucketAt(tab, i);
+
+            if (f == null) {
+                // Empty bucket, no lock needed
+                if (casBucket(tab, i, null, new Node<>(h, key, value, null))) {
+                    binCount = 0;
+                    break;
+                }
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer((ForwardingNode<K, V>) f, false);
+            } else {
+                binCount = -1;
+                Node<K, V> existing = null;
+                synchronized (f) {
+                    // The first entry may have been removed or moved before we got the lock
+                    if (bucketAt(tab, i) == f) {
+                        binCount = 1;
+                        for (Node<K, V> e = f;; binCount++) {
+                            if (e.hash == h && key.equals(e.key)) {
+                                existing = e;
+                                break;
+                            }
+                            if (e.next == null) {
+                                e.next = new Node<>(h, key, value, null);
+                                break;
+                            }
+                            e = e.next;
+                        }
+                    }
+                    if (existing != null) {
+                        V oldValue = existing.value;
+                        existing.value = value;
+                        return oldValue;
+                    }
+                }
+                if (binCount != -1) {
+                    break;
+                }
+            }
+        }
+
+        size.increment();
+        afterWrite(binCount);
+        return null;
+    }
+
+    /*
+    * Returns the value against specfied key and remove the key-value pair if the
+    * key is found Otherwise, returns null if the key is null and key is not present.
+    */
+    public V remove(K key) {
+        if (key == null) {
+            return null;
+        }
+
+        final int h = spread(key.hashCode());
+
+        for (Node<K, V>[] tab = table;;) {
+            int i = (tab.length - 1) & h;
+            Node<K, V> f = bucketAt(tab, i);
+
+            if (f == null) {
+                return null;
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer((ForwardingNode<K, V>) f, false);
+            } else {
+                boolean validated = false;
+                Node<K, V> removed = null;
+                synchronized (f) {
+                    if (bucketAt(tab, i) == f) {
+                        validated = true;
+                        for (Node<K, V> e = f, previous = null; e != null; previous = e, e = e.next) {
+                            if (e.hash == h && key.equals(e.key)) {
+                                if (previous == null) {
+                                    setBucket(tab, i, e.next);
+                                } else {
+                                    previous.next = e.next;
+                                }
+                                removed = e;
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (validated) {
+                    if (removed == null) {
+                        return null;
+                    }
+                    size.decrement();
+                    afterWrite(0);
+                    return removed.value;
+                }
+            }
+        }
+    }
+
+    /*
+    * Helper method called after every write. Helps the running resize if there
+    * is one, otherwise starts a resize when the threshold has been reached.
+    * The size is only summed up when the write landed in a non empty bucket,
+    * which is the only case where chains get longer.
+    */
+    private void afterWrite(int binCount) {
+        Transfer<K, V> t = transfer;
+        if (t != null) {
+            helpTransfer(t, false);
+            return;
+        }
+
+        if (binCount < 1) {
+            return;
+        }
+
+        Node<K, V>[] tab = table;
+        int sc = sizeCtl;
+        if (sc < 0 || size.sum() < sc || tab.length >= MAXIMUM_CAPACITY) {
+            return;
+        }
+
+        if (SIZE_CTL.compareAndSet(this, sc, -1)) {
+            // Another resize may have finished between reading the table and sizeCtl
+            if (tab != table) {
+                sizeCtl = sc;
+                return;
+            }
+            t = new Transfer<>(tab, (Node<K, V>[]) new Node[tab.length << 1]);
+            transfer = t;
+            helpTransfer(t, false);
+        }
+    }
+
+    /*
+    * Helper method which moves buckets of the running resize if the forwarding
+    * entry belongs to it, and returns the table the forwarding entry points to
+    */
+    private Node<K, V>[] helpTransfer(ForwardingNode<K, V> f, boolean untilClaimed) {
+        Transfer<K, V> t = transfer;
+        if (t != null && t.to == f.nextTable) {
+            helpTransfer(t, untilClaimed);
+        }
+        return f.nextTable;
+    }
+
+    /*
+    * Helper method which claims and moves one stride of buckets, or every bucket
+    * left to claim if untilClaimed is true. The thread moving the last bucket
+    * publishes the new table.
+    */
+    private void helpTransfer(Transfer<K, V> t, boolean untilClaimed) {
+        do {
+            int end = t.nextBucket.get();
+            if (end <= 0) {
+                return;
+            }
+            int start = Math.max(0, end - TRANSFER_STRIDE);
+            if (!t.nextBucket.compareAndSet(end, start)) {
+                continue;
+            }
+
+            for (int i = end - 1; i >= start; i--) {
+                moveBucket(t, i);
+            }
+
+            if (t.moved.addAndGet(end - start) == t.from.length) {
+                table = t.to;
+                transfer = null;
+                sizeCtl = (int) (t.to.length * maxLoadFactor);
+                return;
+            }
+        } while (untilClaimed);
+    }
+
+    /*
+    * Helper method which copies bucket i of the old table into buckets i and
+    * i + n of the new table, then forwards the old bucket to the new table.
+    * Entries of the old chain are never modified because readers may still be
+    * walking it, except for the tail which goes to a single new bucket and is
+    * shared as is.
+    */
+    private void moveBucket(Transfer<K, V> t, int i) {
+        final int n = t.from.length;
+
+        for (;;) {
+            Node<K, V> f = bucketAt(t.from, i);
+            if (f == null) {
+                if (casBucket(t.from, i, null, t.forward)) {
+                    return;
+                }
+                continue;
+            }
+
+            synchronized (f) {
+                if (bucketAt(t.from, i) != f) {
+                    continue;
+                }
+
+                // Find the longest tail whose entries all go to the same bucket
+                int runBit = f.hash & n;
+                Node<K, V> lastRun = f;
+                for (Node<K, V> e = f.next; e != null; e = e.next) {
+                    int b = e.hash & n;
+                    if (b != runBit) {
+                        runBit = b;
+                        lastRun = e;
+                    }
+                }
+
+                Node<K, V> low = runBit == 0 ? lastRun : null;
+                Node<K, V> high = runBit == 0 ? null : lastRun;
+                for (Node<K, V> e = f; e != lastRun; e = e.next) {
+                    if ((e.hash & n) == 0) {
+                        low = new Node<>(e.hash, e.key, e.value, low);
+                    } else {
+                        high = new Node<>(e.hash, e.key, e.value, high);
+                    }
+                }
+
+                setBucket(t.to, i, low);
+                setBucket(t.to, i + n, high);
+                setBucket(t.from, i, t.forward);
+                return;
+            }
+        }
+    }
+
+    /*
+    * Helper method which adds every entry of bucket i to the list, following
+    * forwarding entries into the new table
+    */
+    private void collect(Node<K, V>[] tab, int i, List<Node<K, V>> entries) {
+        for (Node<K, V> e = bucketAt(tab, i); e != null; e = e.next) {
+            if (e.hash == MOVED) {
+                Node<K, V>[] nextTable = ((ForwardingNode<K, V>) e).nextTable;
+                collect(nextTable, i, entries);
+                collect(nextTable, i + tab.length, entries);
+                return;
+            }
+            entries.add(e);
+        }
+    }
+
+    /*
+    * Returns every entry in the hash table. Changes made by other threads while
+    * the entries are being collected may or may not be reflected.
+    */
+    private List<Node<K, V>> entries() {
+        Node<K, V>[] tab = table;
+        List<Node<K, V>> entries = new ArrayList<>(size());
+        for (int i = 0; i < tab.length; i++) {
+            collect(tab, i, entries);
+        }
+        return entries;
+    }
+
+    /*
+    * Returns the list of keys in the hash table
+    */
+    public List<K> keys() {
+        List<K> keys = new ArrayList<>();
+        for (Node<K, V> entry : entries()) {
+            keys.add(entry.key);
+        }
+        return keys;
+    }
+
+    /*
+    * Returns the list of values in the hash table
+    */
+    public List<V> values() {
+        List<V> values = new ArrayList<>();
+        for (Node<K, V> entry : entries()) {
+            values.add(entry.value);
+        }
+        return values;
+    }
+
+    /*
+    * Returns the String representation of the hash table
+    */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+
+        for (Node<K, V> entry : entries()) {
+            sb.append(entry.key + " : " + entry.value + ", ");
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
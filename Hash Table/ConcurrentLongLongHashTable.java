@@ -0,0 +1,615 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+* Lock-free linear probing hash table for long keys and long values, meant to be
+* shared by many threads. Int keys are stored as long keys, so neither keys nor
+* values are ever boxed.
+*
+* Every bucket is two adjacent longs of a single array, the key followed by the
+* value, and both are only changed by compare-and-set through a VarHandle. A key
+* is written once when its bucket is claimed and stays there, removing a key only
+* sets its value back to absent. Lookups never write anything.
+*
+* Resizing follows Cliff Click's NonBlockingHashMap. The bigger table is linked
+* from the current one and every thread updating the map copies a chunk of the
+* old buckets before doing its own work. The thread setting the bit of a bucket
+* in the copying bitmap copies it: it writes the value to the next table, then
+* replaces it with COPIED by a compare-and-set. Until then the value stays in
+* the old bucket, where lookups read it and updates change it, and a changed
+* value makes the compare-and-set fail so the copy is written again. Only a
+* COPIED bucket sends threads to the next table, so no thread ever waits for a
+* copy to finish. Once every bucket is copied the new table replaces the old one.
+*
+* Long.MIN_VALUE and Long.MIN_VALUE + 1 mark absent and copied values, so they
+* cannot be stored.
+*/
+public class ConcurrentLongLongHashTable {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double DEFAUT_LOAD_FACTOR = 0.75;
+
+    // The slots array holds two longs per bucket
+    private static final int MAXIMUM_CAPACITY = 1 << 29;
+
+    // The value of a in linear probe function: ax + b
+    private static final int LINEAR_CONSTANT = 13;
+
+    // Number of buckets copied at once by a thread helping a resize
+    private static final int COPY_CHUNK = 1024;
+
+    // Key of a bucket nobody claimed yet. The key 0 itself is kept in zeroValue.
+    private static final long FREE_KEY = 0;
+
+    // Reserved values: no value, value copied to the next table
+    private static final long ABSENT = Long.MIN_VALUE;
+    private static final long COPIED = Long.MIN_VALUE + 1;
+
+    // Kinds of update
+    private static final int PUT = 0;
+    private static final int PUT_IF_ABSENT = 1;
+    private static final int REMOVE = 2;
+    private static final int ADD = 3;
+    private static final int COPY = 4;
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle COPYING = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle TABLE;
+    private static final VarHandle ZERO_VALUE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TABLE = lookup.findVarHandle(ConcurrentLongLongHashTable.class, "table", Table.class);
+            ZERO_VALUE = lookup.findVarHandle(ConcurrentLongLongHashTable.class, "zeroValue", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /*
+    * One generation of buckets. A resize links the next generation and leaves
+    * this one in place until all of its buckets are copied.
+    */
+    private static final class Table {
+        private static final VarHandle NEXT;
+        private static final VarHandle USED_BUCKETS;
+        private static final VarHandle COPY_INDEX;
+        private static final VarHandle COPIED_BUCKETS;
+
+        static {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                NEXT = lookup.findVarHandle(Table.class, "next", Table.class);
+                USED_BUCKETS = lookup.findVarHandle(Table.class, "usedBuckets", int.class);
+                COPY_INDEX = lookup.findVarHandle(Table.class, "copyIndex", int.class);
+                COPIED_BUCKETS = lookup.findVarHandle(Table.class, "copiedBuckets", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        // Keys at even indices, values at odd indices
+        final long[] slots;
+
+        // One bit per bucket, set by the thread which copies the bucket to the next table
+        final long[] copying;
+
+        // Always a power of 2
+        final int capacity;
+        final int mask;
+
+        // Claiming this many buckets starts a resize
+        final int threshold;
+
+        // The table the buckets are copied to, null until a resize starts
+        volatile Table next;
+
+        // The number of buckets whose key was claimed
+        volatile int usedBuckets;
+
+        // The next chunk to be copied by a helping thread, wraps around the capacity
+        volatile int copyIndex;
+
+        // The number of COPIED buckets, the copy is complete when it reaches capacity
+        volatile int copiedBuckets;
+
+        Table(int capacity, double loadFactor) {
+            this.capacity = capacity;
+            mask = capacity - 1;
+            threshold = (int) (capacity * loadFactor);
+            slots = new long[capacity << 1];
+            copying = new long[(capacity + 63) >>> 6];
+            for (int i = 1; i < slots.length; i += 2) {
+                slots[i] = ABSENT;
+            }
+        }
+    }
+
+    // Changing load factor
+    private final double loadFactor;
+
+    // The oldest table still in use, lookups start here
+    private volatile Table table;
+
+    // Value of the key 0, which marks free buckets in the tables
+    private volatile long zeroValue = ABSENT;
+
+    // The number of unique key-value pair in the hash table
+    private final LongAdder keyCount = new LongAdder();
+
+    // Value returned by get, put and remove when the key is not present
+    private final long noEntryValue;
+
+    public ConcurrentLongLongHashTable() {
+        this(DEFAULT_CAPACITY, DEFAUT_LOAD_FACTOR, 0);
+    }
+
+    public ConcurrentLongLongHashTable(int capacity) {
+        this(capacity, DEFAUT_LOAD_FACTOR, 0);
+    }
+
+    public ConcurrentLongLongHashTable(int capacity, double loadFactor) {
+        this(capacity, loadFactor, 0);
+    }
+
+    public ConcurrentLongLongHashTable(int capacity, double loadFactor, long noEntryValue) {
+        if (capacity < 0 || capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Illegal capacity");
+        }
+
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        }
+
+        this.loadFactor = loadFactor;
+        this.noEntryValue = noEntryValue;
+        table = new Table(Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, capacity) - 1) << 1, loadFactor);
+    }
+
+    /*
+    * Returns the index of the first bucket for the key. The key is mixed so that
+    * sequential ids do not fill neighbouring buckets.
+    */
+    private static int hashIndex(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static boolean isReserved(long value) {
+        return value <= COPIED;
+    }
+
+    /*
+    * Returns the value an update of the specified kind stores over v
+    */
+    private static long newValue(long v, long value, int kind) {
+        switch (kind) {
+            case PUT_IF_ABSENT:
+                return v == ABSENT ? value : v;
+            case REMOVE:
+                return ABSENT;
+            case ADD:
+                return (v == ABSENT ? 0 : v) + value;
+            default:
+                return value;
+        }
+    }
+
+    /*
+    * Helper method which counts a key added or removed by replacing v with newValue
+    */
+    private void countKey(long v, long newValue) {
+        if (v == ABSENT) {
+            keyCount.increment();
+        } else if (newValue == ABSENT) {
+            keyCount.decrement();
+        }
+    }
+
+    /*
+    * Returns true if the hash table is empty, otherwise, false
+    */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /*
+    * Returns the size of the hash table. The count is exact when no update is
+    * running at the same time.
+    */
+    public long size() {
+        return keyCount.sum();
+    }
+
+    /*
+    * Returns the capacity of the hash table
+    */
+    public int getCapacity() {
+        return table.capacity;
+    }
+
+    /*
+    * Returns the value returned when a key is not present
+    */
+    public long getNoEntryValue() {
+        return noEntryValue;
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns noEntryValue and adds the new
+    * key-value if the key is not present.
+    */
+    public long put(long key, long value) {
+        if (isReserved(value)) {
+            throw new IllegalArgumentException("Illegal value");
+        }
+        return orNoEntry(update(key, value, PUT));
+    }
+
+    /*
+    * Returns the value of the key if it is present. Otherwise, adds the key-value
+    * pair and returns noEntryValue.
+    */
+    public long putIfAbsent(long key, long value) {
+        if (isReserved(value)) {
+            throw new IllegalArgumentException("Illegal value");
+        }
+        return orNoEntry(update(key, value, PUT_IF_ABSENT));
+    }
+
+    /*
+    * Adds delta to the value of the key, a missing key counting as 0, and returns
+    * the new value
+    */
+    public long addAndGet(long key, long delta) {
+        long v = update(key, delta, ADD);
+        return (v == ABSENT ? 0 : v) + delta;
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean containsKey(long key) {
+        return find(key) != ABSENT;
+    }
+
+    /*
+    * Returns the value against the specfied key if the key is found. Otherwise,
+    * returns noEntryValue.
+    */
+    public long get(long key) {
+        return orNoEntry(find(key));
+    }
+
+    /*
+    * Returns the value against the specfied key if the key is found. Otherwise,
+    * returns defaultValue.
+    */
+    public long getOrDefault(long key, long defaultValue) {
+        long v = find(key);
+        return v == ABSENT ? defaultValue : v;
+    }
+
+    /*
+    * Removes the key and returns its value if the key is found. Otherwise,
+    * returns noEntryValue.
+    */
+    public long remove(long key) {
+        return orNoEntry(update(key, 0, REMOVE));
+    }
+
+    private long orNoEntry(long v) {
+        return v == ABSENT ? noEntryValue : v;
+    }
+
+    /*
+    * Returns the value of the key, or ABSENT if it is not present
+    */
+    private long find(long key) {
+        if (key == FREE_KEY) {
+            return zeroValue;
+        }
+
+        Table t = table;
+        outer:
+        for (;;) {
+            final long[] slots = t.slots;
+            final int mask = t.mask;
+
+            for (int i = hashIndex(key, mask), probes = 0;; i = (i + LINEAR_CONSTANT) & mask) {
+                long k = (long) SLOTS.getVolatile(slots, i << 1);
+                if (k == key) {
+                    long v = (long) SLOTS.getVolatile(slots, (i << 1) + 1);
+                    if (v != COPIED) {
+                        return v;
+                    }
+                    // The value was written to the next table before it was marked COPIED
+                    t = t.next;
+                    continue outer;
+                }
+
+                // A key is always claimed in the first free bucket of its probe sequence,
+                // and moves to the next table only from there, so it is not present
+                if (k == FREE_KEY) {
+                    return ABSENT;
+                }
+
+                // Every bucket holds another key, the key was put in the next table
+                if (++probes == t.capacity) {
+                    t = t.next;
+                    if (t == null) {
+                        return ABSENT;
+                    }
+                    continue outer;
+                }
+            }
+        }
+    }
+
+    /*
+    * Applies the update to the key and returns the previous value, or ABSENT
+    */
+    private long update(long key, long value, int kind) {
+        if (key == FREE_KEY) {
+            return updateZero(value, kind);
+        }
+
+        Table t = table;
+        if (t.next != null) {
+            helpCopy(t);
+        }
+        return update(t, key, value, kind);
+    }
+
+    /*
+    * Applies the update to the key starting at the specified table
+    */
+    private long update(Table t, long key, long value, int kind) {
+        outer:
+        for (;;) {
+            final long[] slots = t.slots;
+            final int mask = t.mask;
+
+            // Find the bucket of the key, claiming the first free one if it is not present
+            int i = hashIndex(key, mask);
+            for (int probes = 0;; i = (i + LINEAR_CONSTANT) & mask) {
+                long k = (long) SLOTS.getVolatile(slots, i << 1);
+                if (k == FREE_KEY) {
+                    if (kind == REMOVE) {
+                        return ABSENT;
+                    }
+                    if (SLOTS.compareAndSet(slots, i << 1, FREE_KEY, key)) {
+                        if ((int) Table.USED_BUCKETS.getAndAdd(t, 1) + 1 >= t.threshold) {
+                            ensureNext(t);
+                        }
+                        break;
+                    }
+                    // Another thread claimed the bucket, possibly for the same key
+                    k = (long) SLOTS.getVolatile(slots, i << 1);
+                }
+
+                if (k == key) {
+                    break;
+                }
+
+                if (++probes == t.capacity) {
+                    if (kind == REMOVE && t.next == null) {
+                        return ABSENT;
+                    }
+                    t = ensureNext(t);
+                    continue outer;
+                }
+            }
+
+            // During a resize copy the bucket first. If another thread is copying it,
+            // the update lands here and makes that copy write the new value again.
+            if (t.next != null && copySlot(t, i)) {
+                copied(t, 1);
+            }
+
+            for (;;) {
+                long v = (long) SLOTS.getVolatile(slots, (i << 1) + 1);
+                if (v == COPIED) {
+                    t = t.next;
+                    continue outer;
+                }
+
+                long newValue = newValue(v, value, kind);
+                if (newValue == v) {
+                    return v;
+                }
+                if (kind == ADD && isReserved(newValue)) {
+                    throw new IllegalArgumentException("Illegal value");
+                }
+                if (SLOTS.compareAndSet(slots, (i << 1) + 1, v, newValue)) {
+                    if (kind != COPY) {
+                        countKey(v, newValue);
+                    }
+                    return v;
+                }
+            }
+        }
+    }
+
+    /*
+    * Applies the update to the key 0
+    */
+    private long updateZero(long value, int kind) {
+        for (;;) {
+            long v = zeroValue;
+            long newValue = newValue(v, value, kind);
+            if (newValue == v) {
+                return v;
+            }
+            if (kind == ADD && isReserved(newValue)) {
+                throw new IllegalArgumentException("Illegal value");
+            }
+            if (ZERO_VALUE.compareAndSet(this, v, newValue)) {
+                countKey(v, newValue);
+                return v;
+            }
+        }
+    }
+
+    /*
+    * Returns the next table of t, starting a resize if there is none yet. The next
+    * table is twice as big, unless removes left most claimed buckets without a
+    * value, in which case it has the same capacity and the copy drops them.
+    */
+    private Table ensureNext(Table t) {
+        Table next = t.next;
+        if (next != null) {
+            return next;
+        }
+
+        int capacity = t.capacity;
+        if (2 * keyCount.sum() >= t.usedBuckets) {
+            if (capacity == MAXIMUM_CAPACITY) {
+                throw new IllegalStateException("Hash table is full");
+            }
+            capacity <<= 1;
+        }
+
+        next = new Table(capacity, loadFactor);
+        if (Table.NEXT.compareAndSet(t, null, next)) {
+            return next;
+        }
+        return t.next;
+    }
+
+    /*
+    * Helper method which copies one chunk of buckets of t to its next table
+    */
+    private void helpCopy(Table t) {
+        int chunk = Math.min(COPY_CHUNK, t.capacity);
+        int start = (int) Table.COPY_INDEX.getAndAdd(t, chunk) & t.mask;
+
+        int copied = 0;
+        for (int i = start; i < start + chunk; i++) {
+            if (copySlot(t, i)) {
+                copied++;
+            }
+        }
+        if (copied > 0) {
+            copied(t, copied);
+        }
+    }
+
+    /*
+    * Copies the bucket to the next table and marks it COPIED. Returns true if this
+    * call copied it, false if another thread took it over, in which case it
+    * returns at once.
+    */
+    private boolean copySlot(Table t, int i) {
+        final long bit = 1L << i;
+        if (((long) COPYING.getAndBitwiseOr(t.copying, i >>> 6, bit) & bit) != 0) {
+            return false;
+        }
+
+        final long[] slots = t.slots;
+        boolean written = false;
+        for (;;) {
+            long v = (long) SLOTS.getVolatile(slots, (i << 1) + 1);
+
+            // A bucket without value needs no copy, unless an earlier value was written
+            if (v != ABSENT || written) {
+                long key = (long) SLOTS.getVolatile(slots, i << 1);
+                update(t.next, key, v, COPY);
+                written = true;
+            }
+            if (SLOTS.compareAndSet(slots, (i << 1) + 1, v, COPIED)) {
+                return true;
+            }
+            // An update changed the value meanwhile, write it again
+        }
+    }
+
+    /*
+    * Helper method which counts COPIED buckets of t, and replaces t with its next
+    * table once all of them are
+    */
+    private void copied(Table t, int copied) {
+        if ((int) Table.COPIED_BUCKETS.getAndAdd(t, copied) + copied < t.capacity) {
+            return;
+        }
+        // The next table may be complete as well when several resizes overlapped
+        while (t.copiedBuckets == t.capacity && TABLE.compareAndSet(this, t, t.next)) {
+            t = t.next;
+            if (t.next == null) {
+                return;
+            }
+        }
+    }
+
+    /*
+    * Returns the list of keys in the hash table. Keys put or removed while it runs
+    * may or may not be included.
+    */
+    public long[] keys() {
+        return collect(true);
+    }
+
+    /*
+    * Returns the list of values in the hash table. Keys put or removed while it
+    * runs may or may not be included.
+    */
+    public long[] values() {
+        return collect(false);
+    }
+
+    /*
+    * Helper method which collects the keys or the values of every table in use
+    */
+    private long[] collect(boolean keys) {
+        long[] result = new long[16];
+        int n = 0;
+
+        long zero = zeroValue;
+        if (zero != ABSENT) {
+            result[n++] = keys ? FREE_KEY : zero;
+        }
+
+        for (Table t = table; t != null; t = t.next) {
+            for (int i = 0; i < t.capacity; i++) {
+                long k = (long) SLOTS.getVolatile(t.slots, i << 1);
+                long v = (long) SLOTS.getVolatile(t.slots, (i << 1) + 1);
+                if (k == FREE_KEY || isReserved(v)) {
+                    continue;
+                }
+                if (n == result.length) {
+                    result = Arrays.copyOf(result, n << 1);
+                }
+                result[n++] = keys ? k : v;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /*
+    * Returns the String representation of the hash table
+    */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+
+        long zero = zeroValue;
+        if (zero != ABSENT) {
+            sb.append(FREE_KEY + " : " + zero + ", ");
+        }
+        for (Table t = table; t != null; t = t.next) {
+            for (int i = 0; i < t.capacity; i++) {
+                long k = (long) SLOTS.getVolatile(t.slots, i << 1);
+                long v = (long) SLOTS.getVolatile(t.slots, (i << 1) + 1);
+                if (k != FREE_KEY && !isReserved(v)) {
+                    sb.append(k + " : " + v + ", ");
+                }
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
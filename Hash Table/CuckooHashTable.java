@@ -0,0 +1,488 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+* Bucketized cuckoo hash table. Every key has exactly two possible buckets, one
+* in each of two tables, chosen by the primary and the secondary hash of its
+* HashStrategy. A bucket holds SLOTS key-value pairs next to each other, so a
+* lookup compares at most 2 * SLOTS keys whatever the load factor, plus a tiny
+* stash which is only checked when it is not empty.
+*
+* An insert whose two buckets are full kicks a random key out of one of them and
+* moves it to its other bucket, which may kick out another key, and so on. The
+* walk is bounded by MAX_KICKS, after which the key left over goes to the stash
+* or the table grows. Inserts therefore cost more than in the probing tables and
+* vary more, lookups do not.
+*
+* The secondary hash is hashCode2() for keys implementing SecondaryHash, a mix
+* of the primary hash for any other key (see HashStrategy). Keys with both hashes
+* equal compete for the same 2 * SLOTS slots, so the hash strategy matters more
+* here than in the probing tables. When growing cannot separate them any more
+* the stash grows instead, and lookups of stashed keys become linear scans.
+*/
+@SuppressWarnings("unchecked")
+public class CuckooHashTable<K, V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double DEFAUT_LOAD_FACTOR = 0.9;
+
+    // Number of key-value pairs in a bucket
+    private static final int SLOTS = 4;
+
+    // Longest chain of displaced keys an insert tries before giving up
+    private static final int MAX_KICKS = 500;
+
+    // Number of key-value pairs which can wait in the stash for a bucket
+    private static final int STASH_SIZE = 4;
+
+    // A rebuild which fails while the load is below 1 / SPARSE grows the stash
+    // instead of the tables, more buckets cannot separate keys with equal hashes
+    private static final int SPARSE = 8;
+
+    // Changing load factor
+    private double loadFactor;
+
+    // Capacity is the number of key-value pairs the hash table can hold
+    private int capacity;
+
+    // Threshold tells us to resize when it reaches a certain value
+    private int threshold;
+
+    // The number of unique key-value pair in the hash table
+    private int keyCount;
+
+    // Number of buckets of each table, always a power of 2
+    private int buckets;
+
+    // buckets - 1, used to compute the bucket index
+    private int mask;
+
+    // Keys and values of the two tables, the slots of bucket b are
+    // b * SLOTS to b * SLOTS + SLOTS - 1
+    private K[][] keys;
+    private V[][] values;
+
+    // Key-value pairs which found no bucket
+    private K[] stashKeys = (K[]) new Object[STASH_SIZE];
+    private V[] stashValues = (V[]) new Object[STASH_SIZE];
+    private int stashCount;
+    private int stashLimit = STASH_SIZE;
+
+    // Computes the two hashes of the keys
+    private final HashStrategy<? super K> hashStrategy;
+
+    // State of the xorshift generator choosing the keys to kick out
+    private int random = 0x9E3779B9;
+
+    // The key-value pair left over by a failed place
+    private K homelessKey;
+    private V homelessValue;
+
+    public CuckooHashTable() {
+        this(DEFAULT_CAPACITY, DEFAUT_LOAD_FACTOR);
+    }
+
+    public CuckooHashTable(int capacity) {
+        this(capacity, DEFAUT_LOAD_FACTOR);
+    }
+
+    public CuckooHashTable(int capacity, double loadFactor) {
+        this(capacity, loadFactor, HashStrategy.fibonacci());
+    }
+
+    public CuckooHashTable(int capacity, double loadFactor, HashStrategy<? super K> hashStrategy) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Illegal capacity");
+        }
+
+        if (loadFactor <= 0 || loadFactor > 1) {
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        }
+
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Illegal hashStrategy");
+        }
+
+        this.loadFactor = loadFactor;
+        this.hashStrategy = hashStrategy;
+        int buckets = Math.max(DEFAULT_CAPACITY, capacity) / (2 * SLOTS);
+        allocate(Integer.highestOneBit(Math.max(1, buckets) - 1) << 1);
+    }
+
+    /*
+    * Helper method which creates empty tables with the specified number of buckets
+    */
+    private void allocate(int buckets) {
+        this.buckets = buckets;
+        mask = buckets - 1;
+        capacity = 2 * buckets * SLOTS;
+        threshold = (int) (capacity * loadFactor);
+        keys = (K[][]) new Object[2][buckets * SLOTS];
+        values = (V[][]) new Object[2][buckets * SLOTS];
+        stashCount = 0;
+    }
+
+    /*
+    * Returns the bucket of the key in the specified table. Both hashes are mixed,
+    * since a mask only keeps their low bits.
+    */
+    private int bucket(int table, K key) {
+        int h = table == 0 ? hashStrategy.hash(key) : hashStrategy.hash2(key);
+        h *= 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /*
+    * Returns the slot holding the key in the bucket, or -1
+    */
+    private int find(K[] table, int bucket, K key) {
+        for (int s = bucket * SLOTS, end = s + SLOTS; s < end; s++) {
+            if (table[s] != null && table[s].equals(key)) {
+                return s;
+            }
+        }
+        return -1;
+    }
+
+    /*
+    * Returns a free slot in the bucket, or -1
+    */
+    private int freeSlot(K[] table, int bucket) {
+        for (int s = bucket * SLOTS, end = s + SLOTS; s < end; s++) {
+            if (table[s] == null) {
+                return s;
+            }
+        }
+        return -1;
+    }
+
+    private int nextRandom() {
+        random ^= random << 13;
+        random ^= random >>> 17;
+        random ^= random << 5;
+        return random;
+    }
+
+    /*
+    * Returns true if the hash table is empty, otherwise, false
+    */
+    public boolean isEmpty() {
+        return keyCount == 0;
+    }
+
+    /*
+    * Returns the size of the hash table
+    */
+    public int size() {
+        return keyCount;
+    }
+
+    /*
+    * Returns the capacity of the hash table
+    */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /*
+    * Clears the hash table
+    */
+    public void clear() {
+        for (int t = 0; t < 2; t++) {
+            for (int i = 0; i < keys[t].length; i++) {
+                keys[t][i] = null;
+                values[t][i] = null;
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            stashKeys[i] = null;
+            stashValues[i] = null;
+        }
+        stashCount = keyCount = 0;
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V put(K key, V value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V add(K key, V value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V insert(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+
+        // Update the value if the key is present
+        for (int t = 0; t < 2; t++) {
+            int s = find(keys[t], bucket(t, key), key);
+            if (s != -1) {
+                V oldValue = values[t][s];
+                values[t][s] = value;
+                return oldValue;
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            if (stashKeys[i].equals(key)) {
+                V oldValue = stashValues[i];
+                stashValues[i] = value;
+                return oldValue;
+            }
+        }
+
+        if (keyCount >= threshold) {
+            resize(buckets << 1, key, value);
+        } else if (!place(key, value)) {
+            resize(buckets << 1, homelessKey, homelessValue);
+        }
+        keyCount++;
+        return null;
+    }
+
+    /*
+    * Helper method which stores a key known not to be present. Returns false if the
+    * kicked out keys ran past MAX_KICKS with the stash full, the key-value pair
+    * left without a slot is then in homelessKey and homelessValue.
+    */
+    private boolean place(K key, V value) {
+        for (int t = 0; t < 2; t++) {
+            int s = freeSlot(keys[t], bucket(t, key));
+            if (s != -1) {
+                keys[t][s] = key;
+                values[t][s] = value;
+                return true;
+            }
+        }
+
+        // Both buckets are full: kick a random key out and move it to its other bucket
+        int t = nextRandom() & 1;
+        int b = bucket(t, key);
+        for (int kicks = 0; kicks < MAX_KICKS; kicks++) {
+            int s = b * SLOTS + (nextRandom() & (SLOTS - 1));
+            K kickedKey = keys[t][s];
+            V kickedValue = values[t][s];
+            keys[t][s] = key;
+            values[t][s] = value;
+            key = kickedKey;
+            value = kickedValue;
+
+            t ^= 1;
+            b = bucket(t, key);
+            s = freeSlot(keys[t], b);
+            if (s != -1) {
+                keys[t][s] = key;
+                values[t][s] = value;
+                return true;
+            }
+        }
+
+        if (stashCount < stashLimit) {
+            if (stashCount == stashKeys.length) {
+                stashKeys = Arrays.copyOf(stashKeys, stashLimit);
+                stashValues = Arrays.copyOf(stashValues, stashLimit);
+            }
+            stashKeys[stashCount] = key;
+            stashValues[stashCount] = value;
+            stashCount++;
+            return true;
+        }
+
+        homelessKey = key;
+        homelessValue = value;
+        return false;
+    }
+
+    /*
+    * Helper method which moves every key-value pair and the extra one into tables
+    * with the specified number of buckets, doubling it again until they all fit.
+    * Once the tables are sparse the stash is doubled instead.
+    */
+    private void resize(int buckets, K extraKey, V extraValue) {
+        List<K> oldKeys = keys();
+        List<V> oldValues = values();
+        oldKeys.add(extraKey);
+        oldValues.add(extraValue);
+        homelessKey = null;
+        homelessValue = null;
+
+        while (true) {
+            allocate(buckets);
+            Arrays.fill(stashKeys, null);
+            Arrays.fill(stashValues, null);
+
+            boolean placed = true;
+            for (int i = 0; i < oldKeys.size() && placed; i++) {
+                placed = place(oldKeys.get(i), oldValues.get(i));
+            }
+            if (placed) {
+                return;
+            }
+
+            if (capacity >= SPARSE * oldKeys.size()) {
+                stashLimit <<= 1;
+            } else {
+                buckets <<= 1;
+            }
+        }
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean containsKey(K key) {
+        return hasKey(key);
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean hasKey(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+
+        if (find(keys[0], bucket(0, key), key) != -1 || find(keys[1], bucket(1, key), key) != -1) {
+            return true;
+        }
+        for (int i = 0; i < stashCount; i++) {
+            if (stashKeys[i].equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns null.
+    */
+    public V get(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+
+        int s = find(keys[0], bucket(0, key), key);
+        if (s != -1) {
+            return values[0][s];
+        }
+        s = find(keys[1], bucket(1, key), key);
+        if (s != -1) {
+            return values[1][s];
+        }
+        for (int i = 0; i < stashCount; i++) {
+            if (stashKeys[i].equals(key)) {
+                return stashValues[i];
+            }
+        }
+        return null;
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns null.
+    */
+    public V remove(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+
+        for (int t = 0; t < 2; t++) {
+            int s = find(keys[t], bucket(t, key), key);
+            if (s != -1) {
+                V oldValue = values[t][s];
+                keys[t][s] = null;
+                values[t][s] = null;
+                keyCount--;
+                return oldValue;
+            }
+        }
+
+        for (int i = 0; i < stashCount; i++) {
+            if (stashKeys[i].equals(key)) {
+                V oldValue = stashValues[i];
+                // Move the last stashed pair into the hole
+                stashCount--;
+                stashKeys[i] = stashKeys[stashCount];
+                stashValues[i] = stashValues[stashCount];
+                stashKeys[stashCount] = null;
+                stashValues[stashCount] = null;
+                keyCount--;
+                return oldValue;
+            }
+        }
+        return null;
+    }
+
+    /*
+    * Returns the list of keys in the hash table
+    */
+    public List<K> keys() {
+        List<K> keyList = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            for (int i = 0; i < keys[t].length; i++) {
+                if (keys[t][i] != null)
+                    keyList.add(keys[t][i]);
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            keyList.add(stashKeys[i]);
+        }
+        return keyList;
+    }
+
+    /*
+    * Returns the list of values in the hash table
+    */
+    public List<V> values() {
+        List<V> valueList = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            for (int i = 0; i < keys[t].length; i++) {
+                if (keys[t][i] != null)
+                    valueList.add(values[t][i]);
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            valueList.add(stashValues[i]);
+        }
+        return valueList;
+    }
+
+    /*
+    * Returns the String representation of the hash table
+    */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+
+        for (int t = 0; t < 2; t++) {
+            for (int i = 0; i < keys[t].length; i++) {
+                if (keys[t][i] != null) {
+                    sb.append(keys[t][i] + " : " + values[t][i] + ", ");
+                }
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            sb.append(stashKeys[i] + " : " + stashValues[i] + ", ");
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+* Supplies the hashes a hash table computes for its keys.
+*
+* hash gives the first bucket of a key, hash2 the probe step used by
+* DoubleHashing. Keys are still compared with equals. The mixers below all
+* start from hashCode() and spread its bits over the whole int, which matters
+* when a weak hashCode() makes keys cluster in neighbouring buckets or when a
+* power of 2 table only keeps the low bits.
+*/
+public interface HashStrategy<K> {
+    /*
+    * Returns the primary hash of the key
+    */
+    int hash(K key);
+
+    /*
+    * Returns the secondary hash of the key. By default it is hashCode2() for keys
+    * implementing SecondaryHash and a Murmur3 mix of the primary hash for any
+    * other key, so keys sharing a first bucket get different probe steps.
+    */
+    default int hash2(K key) {
+        if (key instanceof SecondaryHash) {
+            return ((SecondaryHash) key).hashCode2();
+        }
+        return murmur3Mix(hash(key) ^ 0x9E3779B9);
+    }
+
+    /*
+    * Returns a strategy using hashCode() as is
+    */
+    static <K> HashStrategy<K> identity() {
+        return key -> key.hashCode();
+    }
+
+    /*
+    * Returns a strategy multiplying hashCode() by the golden ratio and folding the
+    * high half into the low half. Cheapest of the mixers, used by default for
+    * power of 2 tables.
+    */
+    static <K> HashStrategy<K> fibonacci() {
+        return key -> {
+            int h = key.hashCode() * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        };
+    }
+
+    /*
+    * Returns a strategy applying the Murmur3 finalizer to hashCode()
+    */
+    static <K> HashStrategy<K> murmur3() {
+        return key -> murmur3Mix(key.hashCode());
+    }
+
+    /*
+    * Returns a strategy applying the xxHash32 avalanche step to hashCode()
+    */
+    static <K> HashStrategy<K> xxHash() {
+        return key -> {
+            int h = key.hashCode() * 0x9E3779B1;
+            h ^= h >>> 15;
+            h *= 0x85EBCA77;
+            h ^= h >>> 13;
+            h *= 0xC2B2AE3D;
+            return h ^ (h >>> 16);
+        };
+    }
+
+    /*
+    * Returns a strategy applying the wyhash mix to hashCode(): a 64x64 to 128 bit
+    * multiplication whose halves are xor-ed together
+    */
+    static <K> HashStrategy<K> wyHash() {
+        return key -> {
+            long a = key.hashCode() ^ 0xA0761D6478BD642FL;
+            long b = 0xE7037ED1A0B428DBL;
+            long h = Math.multiplyHigh(a, b) ^ (a * b);
+            return (int) (h ^ (h >>> 32));
+        };
+    }
+
+    /*
+    * Murmur3 32 bit finalizer
+    */
+    private static int murmur3Mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,182 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/*
+* Snapshot of the probe lengths, tombstones and resizes of a hash table, returned
+* by the metrics() method of the tables. Nothing is measured on the lookup path:
+* the probe lengths are recomputed by walking the table when the snapshot is
+* taken, which costs about as much as looking up every key once.
+*
+* A slow table usually shows one of three patterns. A long average probe length
+* at a low load factor points at a bad hash, a high tombstone count compared to
+* usedBuckets points at many removes, and a long average probe length with few
+* tombstones at a load factor close to 1 points at the load factor itself.
+*/
+public class HashTableMetrics implements HashTableMetricsMXBean {
+    private final int size;
+    private final int capacity;
+    private final int usedBuckets;
+    private final long resizeCount;
+    private final long resizeTimeNanos;
+
+    private int tombstones;
+
+    // Element n counts the keys found after n + 1 probes
+    private long[] probeLengths = new long[0];
+
+    // Element n counts the chains of length n
+    private long[] chainLengths = new long[0];
+
+    HashTableMetrics(int size, int capacity, int usedBuckets, long resizeCount, long resizeTimeNanos) {
+        this.size = size;
+        this.capacity = capacity;
+        this.usedBuckets = usedBuckets;
+        this.resizeCount = resizeCount;
+        this.resizeTimeNanos = resizeTimeNanos;
+    }
+
+    /*
+    * Records a key found after the specified number of probes
+    */
+    void addProbeLength(int length) {
+        probeLengths = count(probeLengths, length - 1);
+    }
+
+    /*
+    * Records a chain of the specified length. Its keys are found after 1 to length probes.
+    */
+    void addChain(int length) {
+        chainLengths = count(chainLengths, length);
+        for (int i = 1; i <= length; i++) {
+            addProbeLength(i);
+        }
+    }
+
+    /*
+    * Sets the number of tombstones
+    */
+    void setTombstones(int tombstones) {
+        this.tombstones = tombstones;
+    }
+
+    /*
+    * Helper method which increments histogram[index], growing the histogram when needed
+    */
+    private static long[] count(long[] histogram, int index) {
+        if (index >= histogram.length) {
+            histogram = Arrays.copyOf(histogram, index + 1);
+        }
+        histogram[index]++;
+        return histogram;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getUsedBuckets() {
+        return usedBuckets;
+    }
+
+    @Override
+    public int getTombstones() {
+        return tombstones;
+    }
+
+    @Override
+    public double getAverageProbeLength() {
+        long keys = 0;
+        long probes = 0;
+        for (int i = 0; i < probeLengths.length; i++) {
+            keys += probeLengths[i];
+            probes += (i + 1) * probeLengths[i];
+        }
+        return keys == 0 ? 0 : (double) probes / keys;
+    }
+
+    @Override
+    public int getMaxProbeLength() {
+        return probeLengths.length;
+    }
+
+    @Override
+    public long[] getProbeLengthHistogram() {
+        return probeLengths.clone();
+    }
+
+    @Override
+    public long[] getChainLengthHistogram() {
+        return chainLengths.clone();
+    }
+
+    @Override
+    public long getResizeCount() {
+        return resizeCount;
+    }
+
+    @Override
+    public long getResizeTimeNanos() {
+        return resizeTimeNanos;
+    }
+
+    @Override
+    public double getLoadFactor() {
+        return capacity == 0 ? 0 : (double) (size + tombstones) / capacity;
+    }
+
+    /*
+    * Registers an MBean with the platform MBean server under the specified name,
+    * for example "hashtable:type=LinearProbingHashTable,name=sessions". Every
+    * attribute read takes a new snapshot from the supplier, usually table::metrics.
+    *
+    * The tables are not thread safe, so a snapshot taken by a JMX thread while the
+    * table is being modified may be inconsistent. It is meant for diagnostics only.
+    */
+    public static ObjectName register(String name, Supplier<HashTableMetrics> metrics) throws JMException {
+        HashTableMetricsMXBean bean = new HashTableMetricsMXBean() {
+            public int getSize() { return metrics.get().getSize(); }
+            public int getCapacity() { return metrics.get().getCapacity(); }
+            public int getUsedBuckets() { return metrics.get().getUsedBuckets(); }
+            public int getTombstones() { return metrics.get().getTombstones(); }
+            public double getLoadFactor() { return metrics.get().getLoadFactor(); }
+            public double getAverageProbeLength() { return metrics.get().getAverageProbeLength(); }
+            public int getMaxProbeLength() { return metrics.get().getMaxProbeLength(); }
+            public long[] getProbeLengthHistogram() { return metrics.get().getProbeLengthHistogram(); }
+            public long[] getChainLengthHistogram() { return metrics.get().getChainLengthHistogram(); }
+            public long getResizeCount() { return metrics.get().getResizeCount(); }
+            public long getResizeTimeNanos() { return metrics.get().getResizeTimeNanos(); }
+        };
+
+        ObjectName objectName = new ObjectName(name);
+        ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(new StandardMBean(bean, HashTableMetricsMXBean.class, true), objectName);
+        return objectName;
+    }
+
+    /*
+    * Unregisters an MBean registered with register
+    */
+    public static void unregister(ObjectName name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+
+    @Override
+    public String toString() {
+        return "{size : " + size + ", capacity : " + capacity + ", usedBuckets : " + usedBuckets
+                + ", tombstones : " + tombstones + ", averageProbeLength : " + getAverageProbeLength()
+                + ", maxProbeLength : " + getMaxProbeLength() + ", resizeCount : " + resizeCount
+                + ", resizeTimeNanos : " + resizeTimeNanos + "}";
+    }
+}
@@ -0,0 +1,68 @@
+/*
+* Management interface of the hash table metrics. Register a table with
+* HashTableMetrics.register to read these attributes from JConsole or any
+* other JMX client.
+*/
+public interface HashTableMetricsMXBean {
+    /*
+    * Returns the number of key-value pairs
+    */
+    int getSize();
+
+    /*
+    * Returns the number of buckets
+    */
+    int getCapacity();
+
+    /*
+    * Returns the number of buckets holding a key-value pair or a tombstone, or
+    * the number of non-empty chains in HashTableSeparateChaining
+    */
+    int getUsedBuckets();
+
+    /*
+    * Returns the number of buckets holding a tombstone, always 0 in
+    * HashTableSeparateChaining
+    */
+    int getTombstones();
+
+    /*
+    * Returns the key-value pairs and tombstones divided by the capacity
+    */
+    double getLoadFactor();
+
+    /*
+    * Returns the average number of buckets, or chain entries, visited to find a key
+    */
+    double getAverageProbeLength();
+
+    /*
+    * Returns the largest number of buckets, or chain entries, visited to find a key
+    */
+    int getMaxProbeLength();
+
+    /*
+    * Returns the probe length histogram, element n counts the keys found after
+    * n + 1 probes
+    */
+    long[] getProbeLengthHistogram();
+
+    /*
+    * Returns the chain length histogram of HashTableSeparateChaining, element n
+    * counts the buckets holding n key-value pairs. Empty for the open addressing
+    * tables.
+    */
+    long[] getChainLengthHistogram();
+
+    /*
+    * Returns the number of resizes since the table was created, including the
+    * ones which only purged tombstones at the same capacity
+    */
+    long getResizeCount();
+
+    /*
+    * Returns the total time spent in resize() in nanoseconds. With incremental
+    * rehashing on, the buckets moved by later operations are not included.
+    */
+    long getResizeTimeNanos();
+}
@@ -1,16 +1,23 @@
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.TreeMap;
 
 /*
 * Class representing data.
-* It constitutes of key-value pair.
+* It constitutes of key-value pair and the link to the next entry of its bucket,
+* so a chain needs no node or list objects besides the entries themselves.
 */
 class Entry<K, V> {
     int hashCode;
     K key;
     V value;
+    Entry<K, V> next;
 
     Entry(K key, V value) {
         this.key = key;
@@ -18,6 +25,12 @@ class Entry<K, V> {
         this.hashCode = key.hashCode();
     }
 
+    Entry(int hashCode, K key, V value) {
+        this.key = key;
+        this.value = value;
+        this.hashCode = hashCode;
+    }
+
     public boolean equals(Entry<K, V> other) {
         if (other.hashCode != this.hashCode) {
             return false;
@@ -30,11 +43,121 @@ class Entry<K, V> {
     }
 }
 
-@SuppressWarnings("unchecked")
+/*
+* Bucket holding a long chain as a balanced tree.
+* Entries are kept in a red-black tree (TreeMap) ordered by hash code, then by
+* key class name and, for Comparable keys of the same class, by compareTo. Keys
+* the ordering cannot tell apart (same hash, not Comparable) share a small list
+* stored under a single tree node. A lookup costs O(log n) instead of O(n) as
+* long as the hash codes or the keys themselves are distinct enough.
+*/
+@SuppressWarnings({ "unchecked", "rawtypes" })
+class TreeBucket<K, V> {
+    private static final Comparator<Entry> ORDER = TreeBucket::compare;
+
+    private final TreeMap<Entry<K, V>, LinkedList<Entry<K, V>>> tree = new TreeMap<>(ORDER);
+
+    // Number of entries in the bucket
+    private int size;
+
+    private static int compare(Entry a, Entry b) {
+        if (a.hashCode != b.hashCode) {
+            return a.hashCode < b.hashCode ? -1 : 1;
+        }
+
+        Class<?> aClass = a.key.getClass();
+        Class<?> bClass = b.key.getClass();
+        if (aClass != bClass) {
+            return aClass.getName().compareTo(bClass.getName());
+        }
+
+        if (a.key instanceof Comparable) {
+            try {
+                return ((Comparable) a.key).compareTo(b.key);
+            } catch (ClassCastException e) {
+                // The class is Comparable to some other type only
+            }
+        }
+        return 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /*
+    * Returns the entry of the key, or null if it is not present
+    */
+    Entry<K, V> find(int hashCode, K key) {
+        LinkedList<Entry<K, V>> ties = tree.get(new Entry<>(hashCode, key, null));
+        if (ties != null) {
+            for (Entry<K, V> entry : ties) {
+                if (entry.key.equals(key)) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    /*
+    * Adds an entry whose key is not present yet
+    */
+    void add(Entry<K, V> entry) {
+        LinkedList<Entry<K, V>> ties = tree.get(entry);
+        if (ties == null) {
+            tree.put(entry, ties = new LinkedList<>());
+        }
+        ties.add(entry);
+        size++;
+    }
+
+    /*
+    * Removes the entry, which must be present in the bucket
+    */
+    void remove(Entry<K, V> entry) {
+        LinkedList<Entry<K, V>> ties = tree.get(entry);
+        ties.remove(entry);
+        if (ties.isEmpty()) {
+            tree.remove(entry);
+        }
+        size--;
+    }
+
+    /*
+    * Links the entries of the bucket in tree order and returns the first one
+    */
+    Entry<K, V> chain() {
+        Entry<K, V> head = null, tail = null;
+        for (LinkedList<Entry<K, V>> ties : tree.values()) {
+            for (Entry<K, V> entry : ties) {
+                if (tail == null) {
+                    head = entry;
+                } else {
+                    tail.next = entry;
+                }
+                tail = entry;
+            }
+        }
+        tail.next = null;
+        return head;
+    }
+}
+
+@SuppressWarnings({ "unchecked", "rawtypes" })
 public class HashTableSeparateChaining<K, V> {
     private static final int DEFAUT_CAPACITY = 3;
     private static final double DEFAUT_LOAD_FACTOR = 0.75;
 
+    // Number of buckets of the old table moved by every operation during an incremental rehash
+    private static final int REHASH_STEP = 16;
+
+    // A chain longer than this is turned into a tree
+    private static final int TREEIFY_THRESHOLD = 8;
+
+    // A tree with this many entries or fewer is turned back into a chain
+    private static final int UNTREEIFY_THRESHOLD = 6;
+
     // Changing load factor
     private double maxLoadFactor;
 
@@ -47,8 +170,29 @@ public class HashTableSeparateChaining<K, V> {
     // Total number of (k, v) pair in the hash table.
     private int size = 0;
 
-    // Hash table represented by LinkedList
-    private LinkedList<Entry<K, V>>[] table;
+    // Hash table represented by chains of entries
+    private Entry<K, V>[] table;
+
+    // Computes the hashes of the keys
+    private final HashStrategy<? super K> hashStrategy;
+
+    // Buckets whose chain grew past TREEIFY_THRESHOLD, the matching slot in table is null
+    private TreeBucket<K, V>[] trees;
+
+    // If true, resize only allocates the new table and the following operations
+    // move the buckets into it a few at a time
+    private boolean incrementalRehash;
+
+    // The old table while an incremental rehash is running, otherwise null
+    private Entry<K, V>[] rehashTable;
+    private TreeBucket<K, V>[] rehashTrees;
+
+    // The next bucket of the old table to be moved
+    private int rehashIndex;
+
+    // The number of resizes and the total time spent in them, reported by metrics()
+    private long resizeCount;
+    private long resizeNanos;
 
     public HashTableSeparateChaining() {
         this(DEFAUT_CAPACITY, DEFAUT_LOAD_FACTOR);
@@ -59,6 +203,10 @@ public class HashTableSeparateChaining<K, V> {
     }
 
     public HashTableSeparateChaining(int capacity, double maxLoadFactor) {
+        this(capacity, maxLoadFactor, HashStrategy.identity());
+    }
+
+    public HashTableSeparateChaining(int capacity, double maxLoadFactor, HashStrategy<? super K> hashStrategy) {
         if (capacity < 0) {
             throw new IllegalArgumentException("Illegal capacity");
         }
@@ -67,10 +215,16 @@ public class HashTableSeparateChaining<K, V> {
             throw new IllegalArgumentException("Illegal maxLoadFactor");
         }
 
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Illegal hashStrategy");
+        }
+
         this.maxLoadFactor = maxLoadFactor;
+        this.hashStrategy = hashStrategy;
         this.capacity = Math.max(DEFAUT_CAPACITY, capacity);
         threshold = (int) (this.capacity * this.maxLoadFactor);
-        table = new LinkedList[this.capacity];
+        table = new Entry[this.capacity];
+        trees = new TreeBucket[this.capacity];
     }
 
     /*
@@ -95,11 +249,66 @@ public class HashTableSeparateChaining<K, V> {
         return (keyHash & 0x7FFFFFFF) % capacity;
     }
 
+    /*
+    * Returns the hash value within 1 to N-1 for a table of the specified capacity
+    */
+    private int normalizeIndex(int keyHash, int capacity) {
+        return (keyHash & 0x7FFFFFFF) % capacity;
+    }
+
+    /*
+    * Returns a snapshot of the chain lengths and resizes of the hash table. The
+    * probe length of a key is its position in its chain, a tree counts as a chain
+    * of the same size. It walks every chain, so it belongs in monitoring code
+    * rather than on the lookup path.
+    */
+    public HashTableMetrics metrics() {
+        Entry<K, V>[] table = this.table;
+        TreeBucket<K, V>[] trees = this.trees;
+        Entry<K, V>[] rehashTable = this.rehashTable;
+        TreeBucket<K, V>[] rehashTrees = this.rehashTrees;
+
+        int usedBuckets = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null || trees[i] != null) {
+                usedBuckets++;
+            }
+        }
+
+        HashTableMetrics metrics = new HashTableMetrics(size, capacity, usedBuckets, resizeCount, resizeNanos);
+        addChains(metrics, table, trees, 0);
+        if (rehashTable != null) {
+            // The buckets before rehashIndex were already moved
+            addChains(metrics, rehashTable, rehashTrees, rehashIndex);
+        }
+        return metrics;
+    }
+
+    /*
+    * Helper method which records the length of every chain of the table from the specified bucket
+    */
+    private void addChains(HashTableMetrics metrics, Entry<K, V>[] table, TreeBucket<K, V>[] trees, int from) {
+        for (int i = from; i < table.length; i++) {
+            int length = 0;
+            if (trees[i] != null) {
+                length = trees[i].size();
+            } else {
+                for (Entry<K, V> entry = table[i]; entry != null; entry = entry.next) {
+                    length++;
+                }
+            }
+            metrics.addChain(length);
+        }
+    }
+
     /*
     * Clears the hash table and sets the size to 0
     */
     public void clear() {
         Arrays.fill(table, null);
+        Arrays.fill(trees, null);
+        rehashTable = null;
+        rehashTrees = null;
         size = 0;
     }
 
@@ -108,8 +317,20 @@ public class HashTableSeparateChaining<K, V> {
     * false
     */
     public boolean hasKey(K key) {
-        int bucketIndex = normalizeIndex(key.hashCode());
-        return bucketSeekEntry(bucketIndex, key) != null;
+        return seekEntry(key) != null;
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns null.
+    */
+    public V get(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+
+        Entry<K, V> entry = seekEntry(key);
+        return entry == null ? null : entry.value;
     }
 
     /*
@@ -140,9 +361,22 @@ public class HashTableSeparateChaining<K, V> {
             throw new IllegalArgumentException("Illegal key");
         }
 
-        Entry<K, V> newEntry = new Entry<>(key, value);
-        int bucketIndex = normalizeIndex(newEntry.hashCode);
-        return bucketInsertKey(bucketIndex, newEntry);
+        if (rehashTable != null) {
+            rehashStep();
+        }
+
+        // During an incremental rehash the key may still be in the old table
+        if (rehashTable != null) {
+            Entry<K, V> oldEntry = rehashSeekEntry(key);
+            if (oldEntry != null) {
+                V oldValue = oldEntry.value;
+                oldEntry.value = value;
+                return oldValue;
+            }
+        }
+
+        int hashCode = hashStrategy.hash(key);
+        return bucketInsertKey(normalizeIndex(hashCode), hashCode, key, value);
     }
 
     /*
@@ -155,26 +389,58 @@ public class HashTableSeparateChaining<K, V> {
             return null;
         }
 
-        int bucketIndex = normalizeIndex(key.hashCode());
-        return bucketRemoveKey(bucketIndex, key);
+        if (rehashTable != null) {
+            rehashStep();
+        }
+
+        int hashCode = hashStrategy.hash(key);
+        V oldValue = bucketRemoveKey(normalizeIndex(hashCode), hashCode, key);
+        if (oldValue == null && rehashTable != null) {
+            Entry<K, V> entry = rehashSeekEntry(key);
+            if (entry != null) {
+                unlinkEntry(rehashTable, rehashTrees, normalizeIndex(entry.hashCode, rehashTable.length), entry);
+                size--;
+                return entry.value;
+            }
+        }
+        return oldValue;
     }
 
     /*
-    * Helper method to insert a key-value in the hash table
+    * Helper method to get a key-value pair from the hash table, including the old
+    * table during an incremental rehash
     */
-    private V bucketInsertKey(int bucketIndex, Entry<K, V> newEntry) {
-        LinkedList<Entry<K, V>> bucket = table[bucketIndex];
-        // If the bucket is not present, create a new bucket at the specified index
-        if (bucket == null) {
-            table[bucketIndex] = bucket = new LinkedList<>();
+    private Entry<K, V> seekEntry(K key) {
+        if (rehashTable != null) {
+            rehashStep();
         }
 
+        int hashCode = hashStrategy.hash(key);
+        Entry<K, V> entry = bucketSeekEntry(normalizeIndex(hashCode), hashCode, key);
+        if (entry == null && rehashTable != null) {
+            entry = rehashSeekEntry(key);
+        }
+        return entry;
+    }
+
+    /*
+    * Helper method to get a key-value pair from the old table
+    */
+    private Entry<K, V> rehashSeekEntry(K key) {
+        int hashCode = hashStrategy.hash(key);
+        return findEntry(rehashTable, rehashTrees, normalizeIndex(hashCode, rehashTable.length), hashCode, key);
+    }
+
+    /*
+    * Helper method to insert a key-value in the hash table
+    */
+    private V bucketInsertKey(int bucketIndex, int hashCode, K key, V value) {
         // Checks if the new key is present in the specified bucket
-        Entry<K, V> existantEntry = bucketSeekEntry(bucketIndex, newEntry.key);
+        Entry<K, V> existantEntry = bucketSeekEntry(bucketIndex, hashCode, key);
 
         // If not present, then add the key-value pair to the bucket.
         if (existantEntry == null) {
-            bucket.add(existantEntry);
+            bucketAddEntry(bucketIndex, new Entry<>(hashCode, key, value));
             // Resize the table if we have reached the threshold
             if (++size > threshold) {
                 resize();
@@ -183,7 +449,7 @@ public class HashTableSeparateChaining<K, V> {
         } else {
             // Modify the old value with the new value
             V oldValue = existantEntry.value;
-            existantEntry.value = newEntry.value;
+            existantEntry.value = value;
             return oldValue;
         }
     }
@@ -191,33 +457,108 @@ public class HashTableSeparateChaining<K, V> {
     /*
     * Helper method to get a key-value pair from the specified bucket in the hash table
     */
-    private Entry<K, V> bucketSeekEntry(int bucketIndex, K key) {
+    private Entry<K, V> bucketSeekEntry(int bucketIndex, int hashCode, K key) {
         if (key == null) {
             return null;
         }
+        return findEntry(table, trees, bucketIndex, hashCode, key);
+    }
+
+    /*
+    * Helper method to get a key-value pair from the specified bucket of a table
+    */
+    private Entry<K, V> findEntry(Entry<K, V>[] table, TreeBucket<K, V>[] trees, int bucketIndex, int hashCode, K key) {
+        // Long chains are searched in the tree
+        if (trees[bucketIndex] != null) {
+            return trees[bucketIndex].find(hashCode, key);
+        }
 
-        // Get the bucket
-        LinkedList<Entry<K, V>> bucket = table[bucketIndex];
-        for (Entry<K, V> entry : bucket) {
-            // Check if the key is present 
-            if (entry.key.equals(key)) {
+        for (Entry<K, V> entry = table[bucketIndex]; entry != null; entry = entry.next) {
+            // Check if the key is present, the cached hash code skips most equals calls
+            if (entry.hashCode == hashCode && entry.key.equals(key)) {
                 return entry;
             }
         }
         return null;
     }
 
+    /*
+    * Helper method to add a key-value pair which is not present to the specified bucket,
+    * turning the chain into a tree once it gets longer than TREEIFY_THRESHOLD
+    */
+    private void bucketAddEntry(int bucketIndex, Entry<K, V> entry) {
+        if (trees[bucketIndex] != null) {
+            trees[bucketIndex].add(entry);
+            return;
+        }
+
+        // Append the entry to the end of the chain
+        entry.next = null;
+        Entry<K, V> last = table[bucketIndex];
+        if (last == null) {
+            table[bucketIndex] = entry;
+            return;
+        }
+        int length = 2;
+        for (; last.next != null; last = last.next) {
+            length++;
+        }
+        last.next = entry;
+
+        if (length > TREEIFY_THRESHOLD) {
+            treeify(bucketIndex);
+        }
+    }
+
+    /*
+    * Helper method to move the chain of the specified bucket into a tree
+    */
+    private void treeify(int bucketIndex) {
+        TreeBucket<K, V> tree = new TreeBucket<>();
+        for (Entry<K, V> e = table[bucketIndex]; e != null; e = e.next) {
+            tree.add(e);
+        }
+        trees[bucketIndex] = tree;
+        table[bucketIndex] = null;
+    }
+
+    /*
+    * Helper method to remove a key-value pair from the specified bucket of a table,
+    * turning a tree back into a chain once it gets small
+    */
+    private void unlinkEntry(Entry<K, V>[] table, TreeBucket<K, V>[] trees, int bucketIndex, Entry<K, V> entry) {
+        TreeBucket<K, V> tree = trees[bucketIndex];
+        if (tree == null) {
+            if (table[bucketIndex] == entry) {
+                table[bucketIndex] = entry.next;
+            } else {
+                Entry<K, V> prev = table[bucketIndex];
+                while (prev.next != entry) {
+                    prev = prev.next;
+                }
+                prev.next = entry.next;
+            }
+            entry.next = null;
+            return;
+        }
+
+        tree.remove(entry);
+        if (tree.size() <= UNTREEIFY_THRESHOLD) {
+            table[bucketIndex] = tree.chain();
+            trees[bucketIndex] = null;
+        }
+    }
+
     /*
     * Helper method to remove a key-value pair from the specified bucket in the hash table
     */
-    private V bucketRemoveKey(int bucketIndex, K key) {
+    private V bucketRemoveKey(int bucketIndex, int hashCode, K key) {
         // Get the key-value pair from the bucket
-        Entry<K, V> entry = bucketSeekEntry(bucketIndex, key);
+        Entry<K, V> entry = bucketSeekEntry(bucketIndex, hashCode, key);
 
         // If present, remove it
         if (entry != null) {
-            LinkedList<Entry<K, V>> bucket = table[bucketIndex];
-            bucket.remove(entry);
+            unlinkEntry(table, trees, bucketIndex, entry);
             size--;
             return entry.value;
         }
@@ -228,35 +569,301 @@ public class HashTableSeparateChaining<K, V> {
     * Helper method to resize the hash table with new capacity on reaching a threshold 
     */
     private void resize() {
+        long start = System.nanoTime();
+        growTable();
+        resizeCount++;
+        resizeNanos += System.nanoTime() - start;
+    }
+
+    /*
+    * Helper method which allocates the bigger table and moves the entries into it
+    */
+    private void growTable() {
+        // Only one rehash can run at a time
+        if (rehashTable != null) {
+            finishRehash();
+        }
+
         // Double the capacity
         capacity *= 2;
         // Recalculate the threshold
         threshold = (int) (capacity * maxLoadFactor);
 
-        // Create a new table with the new capacity
-        LinkedList<Entry<K, V>>[] newTable = new LinkedList[capacity];
+        // Keep the old table aside and create a new table with the new capacity
+        rehashTable = table;
+        rehashTrees = trees;
+        rehashIndex = 0;
+        table = new Entry[capacity];
+        trees = new TreeBucket[capacity];
+
+        // Copy the values from the old table to the new table, unless
+        // rehashStep moves them over time
+        if (!incrementalRehash) {
+            finishRehash();
+        }
+    }
 
-        // Copy the values from the old table to the new table
-        for (int i = 0; i < table.length; i++) {
-            if (table[i] != null) {
-                for (Entry<K, V> entry : table[i]) {
-                    int bucketIndex = normalizeIndex(entry.hashCode);
-                    // Get the bucket at the index
-                    LinkedList<Entry<K, V>> bucket = newTable[bucketIndex];
-                    // Create a new bucket if it is not there
-                    if (bucket == null) {
-                        newTable[bucketIndex] = bucket = new LinkedList<>();
+    /*
+    * Turns incremental rehashing on or off. When it is on, a resize only allocates
+    * the bigger table and every following put, get or remove moves at most
+    * REHASH_STEP buckets of the old table into it. Until the old table is empty,
+    * lookups check both tables, so no single operation pays for the whole rehash.
+    */
+    public void setIncrementalRehash(boolean incrementalRehash) {
+        if (!incrementalRehash && rehashTable != null) {
+            finishRehash();
+        }
+        this.incrementalRehash = incrementalRehash;
+    }
+
+    /*
+    * Returns true while an incremental rehash is running
+    */
+    public boolean isRehashing() {
+        return rehashTable != null;
+    }
+
+    /*
+    * Helper method which moves up to REHASH_STEP buckets of the old table to the new one
+    */
+    private void rehashStep() {
+        int end = Math.min(rehashIndex + REHASH_STEP, rehashTable.length);
+        for (; rehashIndex < end; rehashIndex++) {
+            Entry<K, V> entry = rehashTable[rehashIndex];
+            if (rehashTrees[rehashIndex] != null) {
+                entry = rehashTrees[rehashIndex].chain();
+            }
+            if (entry == null) {
+                continue;
+            }
+
+            // The capacity was doubled, so every entry of bucket i goes either to
+            // bucket i or to bucket i + old capacity. The chain is split in two
+            // using the cached hash codes, without allocating anything.
+            Entry<K, V> lowHead = null, lowTail = null, highHead = null, highTail = null;
+            int lowLength = 0, highLength = 0;
+            for (Entry<K, V> next; entry != null; entry = next) {
+                next = entry.next;
+                entry.next = null;
+                if (normalizeIndex(entry.hashCode) == rehashIndex) {
+                    if (lowTail == null) {
+                        lowHead = entry;
+                    } else {
+                        lowTail.next = entry;
+                    }
+                    lowTail = entry;
+                    lowLength++;
+                } else {
+                    if (highTail == null) {
+                        highHead = entry;
+                    } else {
+                        highTail.next = entry;
                     }
-                    bucket.add(entry);
+                    highTail = entry;
+                    highLength++;
                 }
+            }
+            transferChain(rehashIndex, lowHead, lowLength);
+            transferChain(rehashIndex + rehashTable.length, highHead, highLength);
 
-                // Helps GC
-                table[i].clear();
-                table[i] = null;
+            // Helps GC
+            rehashTable[rehashIndex] = null;
+            rehashTrees[rehashIndex] = null;
+        }
+
+        if (rehashIndex == rehashTable.length) {
+            rehashTable = null;
+            rehashTrees = null;
+        }
+    }
+
+    /*
+    * Helper method to move a chain from the old table into the specified bucket
+    */
+    private void transferChain(int bucketIndex, Entry<K, V> head, int length) {
+        if (head == null) {
+            return;
+        }
+
+        if (table[bucketIndex] == null && trees[bucketIndex] == null) {
+            table[bucketIndex] = head;
+            if (length > TREEIFY_THRESHOLD) {
+                treeify(bucketIndex);
             }
+            return;
         }
 
-        table = newTable;
+        // Keys were added to the bucket during an incremental rehash
+        for (Entry<K, V> next; head != null; head = next) {
+            next = head.next;
+            bucketAddEntry(bucketIndex, head);
+        }
+    }
+
+    /*
+    * Helper method which moves everything left in the old table to the new one
+    */
+    private void finishRehash() {
+        while (rehashTable != null) {
+            rehashStep();
+        }
+    }
+
+    /*
+    * Writes the hash table to the channel as a snapshot: the capacity, the load
+    * factor and the size, then every non-empty bucket as its index, its length and
+    * its entries with their cached hashes. Keys and values are encoded by the
+    * codecs straight into the output buffer, no list of the entries is built. The
+    * channel is not closed.
+    */
+    public void writeSnapshot(WritableByteChannel channel, Codec<? super K> keyCodec, Codec<? super V> valueCodec)
+            throws IOException {
+        if (rehashTable != null) {
+            finishRehash();
+        }
+
+        HashTableSnapshot.Output out = new HashTableSnapshot.Output(channel, HashTableSnapshot.SEPARATE_CHAINING);
+        out.writeInt(capacity);
+        out.writeDouble(maxLoadFactor);
+        out.writeInt(size);
+
+        for (int i = 0; i < capacity; i++) {
+            int length = trees[i] != null ? trees[i].size() : 0;
+            Entry<K, V> head = trees[i] != null ? trees[i].chain() : table[i];
+            if (trees[i] == null) {
+                for (Entry<K, V> entry = head; entry != null; entry = entry.next) {
+                    length++;
+                }
+            }
+            if (length == 0) {
+                continue;
+            }
+
+            out.writeInt(i);
+            out.writeInt(length);
+            for (Entry<K, V> entry = head; entry != null; entry = entry.next) {
+                out.writeInt(entry.hashCode);
+                out.write(keyCodec, entry.key);
+                out.writeNullable(valueCodec, entry.value);
+            }
+        }
+        // No bucket has a negative index
+        out.writeInt(-1);
+        out.flush();
+    }
+
+    /*
+    * Reads a hash table written by writeSnapshot, using the default hash strategy
+    */
+    public static <K, V> HashTableSeparateChaining<K, V> readSnapshot(ReadableByteChannel channel, Codec<K> keyCodec,
+            Codec<V> valueCodec) throws IOException {
+        return readSnapshot(channel, keyCodec, valueCodec, HashStrategy.identity());
+    }
+
+    /*
+    * Reads a hash table written by writeSnapshot. The entries are linked back into
+    * the buckets they were written from with their stored hashes, only the first
+    * key of the first CHECKED_KEYS buckets is hashed to compare the strategy with
+    * the writer's. If it differs, every key is hashed again once everything is
+    * read. The input is read
+    * ahead in large blocks, so the channel should hold nothing after the snapshot.
+    */
+    public static <K, V> HashTableSeparateChaining<K, V> readSnapshot(ReadableByteChannel channel, Codec<K> keyCodec,
+            Codec<V> valueCodec, HashStrategy<? super K> hashStrategy) throws IOException {
+        HashTableSnapshot.Input in = new HashTableSnapshot.Input(channel, HashTableSnapshot.SEPARATE_CHAINING);
+        int capacity = in.readInt();
+        double maxLoadFactor = in.readDouble();
+        int size = in.readInt();
+
+        HashTableSeparateChaining<K, V> table = new HashTableSeparateChaining<>(capacity, maxLoadFactor, hashStrategy);
+        if (table.capacity != capacity) {
+            throw new IOException("Illegal snapshot");
+        }
+
+        boolean sameStrategy = true;
+        int checked = 0;
+        for (int bucketIndex = in.readInt(), last = -1; bucketIndex != -1; bucketIndex = in.readInt()) {
+            // Buckets are written in increasing order
+            if (bucketIndex <= last || bucketIndex >= capacity) {
+                throw new IOException("Illegal snapshot");
+            }
+            last = bucketIndex;
+
+            int length = in.readCount(size - table.size);
+            Entry<K, V> tail = null;
+            for (int i = 0; i < length; i++) {
+                int hashCode = in.readInt();
+                K key = in.read(keyCodec);
+                if (key == null) {
+                    throw new IOException("Illegal snapshot");
+                }
+                // Keys of different buckets have different hashes, so only the
+                // first key of a bucket is checked
+                if (i == 0 && checked++ < HashTableSnapshot.CHECKED_KEYS && hashStrategy.hash(key) != hashCode) {
+                    sameStrategy = false;
+                }
+
+                Entry<K, V> entry = new Entry<>(hashCode, key, in.readNullable(valueCodec));
+                if (tail == null) {
+                    table.table[bucketIndex] = entry;
+                } else {
+                    tail.next = entry;
+                }
+                tail = entry;
+                table.size++;
+            }
+            if (length > TREEIFY_THRESHOLD) {
+                table.treeify(bucketIndex);
+            }
+        }
+        if (table.size != size) {
+            throw new IOException("Illegal snapshot");
+        }
+
+        // The buckets and the cached hashes only fit the strategy which wrote them
+        if (!sameStrategy) {
+            table.rehashEntries();
+        }
+        return table;
+    }
+
+    /*
+    * Helper method which hashes every key again and moves the entries to their
+    * buckets at the same capacity
+    */
+    private void rehashEntries() {
+        List<Entry<K, V>> entries = entries();
+        Arrays.fill(table, null);
+        Arrays.fill(trees, null);
+        for (Entry<K, V> entry : entries) {
+            entry.hashCode = hashStrategy.hash(entry.key);
+            bucketAddEntry(normalizeIndex(entry.hashCode), entry);
+        }
+    }
+
+    /*
+    * Returns every key-value pair of the table, the tree buckets and the old
+    * table during an incremental rehash
+    */
+    private List<Entry<K, V>> entries() {
+        List<Entry<K, V>> entries = new ArrayList<>(size);
+        addEntries(table, trees, entries);
+        if (rehashTable != null) {
+            addEntries(rehashTable, rehashTrees, entries);
+        }
+        return entries;
+    }
+
+    /*
+    * Helper method to collect the key-value pairs of a table
+    */
+    private void addEntries(Entry<K, V>[] table, TreeBucket<K, V>[] trees, List<Entry<K, V>> entries) {
+        for (int i = 0; i < table.length; i++) {
+            Entry<K, V> entry = trees[i] != null ? trees[i].chain() : table[i];
+            for (; entry != null; entry = entry.next) {
+                entries.add(entry);
+            }
+        }
     }
 
     /* 
@@ -264,12 +871,8 @@ public class HashTableSeparateChaining<K, V> {
     */
     public List<K> keys() {
         List<K> keys = new ArrayList<>(size);
-        for (LinkedList<Entry<K, V>> bucket : table) {
-            if (bucket != null) {
-                for (Entry<K, V> entry : bucket) {
-                    keys.add(entry.key);
-                }
-            }
+        for (Entry<K, V> entry : entries()) {
+            keys.add(entry.key);
         }
         return keys;
     }
@@ -279,12 +882,8 @@ public class HashTableSeparateChaining<K, V> {
     */
     public List<V> values() {
         List<V> values = new ArrayList<>(size);
-        for (LinkedList<Entry<K, V>> bucket : table) {
-            if (bucket != null) {
-                for (Entry<K, V> entry : bucket) {
-                    values.add(entry.value);
-                }
-            }
+        for (Entry<K, V> entry : entries()) {
+            values.add(entry.value);
         }
         return values;
     }
@@ -297,12 +896,8 @@ public class HashTableSeparateChaining<K, V> {
         StringBuilder sb = new StringBuilder();
         sb.append("{");
 
-        for (LinkedList<Entry<K, V>> bucket : table) {
-            if (bucket != null) {
-                for (Entry<K, V> entry : bucket) {
-                    sb.append(entry.key + " : " + entry.value + ", ");
-                }
-            }
+        for (Entry<K, V> entry : entries()) {
+            sb.append(entry.key + " : " + entry.value + ", ");
         }
         sb.append("}");
         return sb.toString();
@@ -0,0 +1,228 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/*
+* Buffered channel I/O shared by the snapshots of LinearProbingHashTable and
+* HashTableSeparateChaining.
+*
+* A snapshot starts with MAGIC, VERSION and the kind of table, the rest is up to
+* the table. Numbers are big-endian. Keys and values are encoded by a Codec
+* directly into a direct buffer, which is written to the channel whenever it is
+* full, so a snapshot never holds more than one buffer of the table in memory.
+* Values may be null, so each one follows a byte telling whether it is present.
+*/
+final class HashTableSnapshot {
+    static final int MAGIC = 0x48545348;
+    static final byte VERSION = 2;
+
+    // Kinds of table
+    static final byte LINEAR_PROBING = 1;
+    static final byte SEPARATE_CHAINING = 2;
+
+    // Record tags of the LinearProbingHashTable buckets
+    static final byte EMPTY_RUN = 0;
+    static final byte TOMBSTONE_RUN = 1;
+    static final byte ENTRY = 2;
+
+    // Number of keys whose hashes are stored to tell whether the reader uses the
+    // same hash strategy as the writer
+    static final int CHECKED_KEYS = 8;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private HashTableSnapshot() {
+    }
+
+    /*
+    * Writes a snapshot to a channel
+    */
+    static final class Output {
+        private final WritableByteChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Output(WritableByteChannel channel, byte kind) throws IOException {
+            this.channel = channel;
+            writeInt(MAGIC);
+            writeByte(VERSION);
+            writeByte(kind);
+        }
+
+        /*
+        * Makes room for at least n bytes in the buffer
+        */
+        private void reserve(int n) throws IOException {
+            if (buffer.remaining() >= n) {
+                return;
+            }
+            drain();
+            if (buffer.capacity() < n) {
+                buffer = ByteBuffer.allocateDirect(n);
+            }
+        }
+
+        /*
+        * Writes the content of the buffer to the channel and empties it
+        */
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void writeByte(int value) throws IOException {
+            reserve(1);
+            buffer.put((byte) value);
+        }
+
+        void writeInt(int value) throws IOException {
+            reserve(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void writeDouble(double value) throws IOException {
+            reserve(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        /*
+        * Encodes the value, behind its length unless the codec has a fixed size
+        */
+        <T> void write(Codec<? super T> codec, T value) throws IOException {
+            final int fixedSize = codec.fixedSize();
+            if (fixedSize >= 0) {
+                reserve(fixedSize);
+                codec.write(value, buffer);
+                return;
+            }
+
+            reserve(Integer.BYTES + codec.maxSize(value));
+            final int lengthPosition = buffer.position();
+            buffer.position(lengthPosition + Integer.BYTES);
+            codec.write(value, buffer);
+            buffer.putInt(lengthPosition, buffer.position() - lengthPosition - Integer.BYTES);
+        }
+
+        /*
+        * Writes whether the value is null, then encodes it unless it is
+        */
+        <T> void writeNullable(Codec<? super T> codec, T value) throws IOException {
+            writeByte(value == null ? 0 : 1);
+            if (value != null) {
+                write(codec, value);
+            }
+        }
+
+        /*
+        * Writes what is left in the buffer to the channel
+        */
+        void flush() throws IOException {
+            drain();
+        }
+    }
+
+    /*
+    * Reads a snapshot from a channel
+    */
+    static final class Input {
+        private final ReadableByteChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Input(ReadableByteChannel channel, byte kind) throws IOException {
+            this.channel = channel;
+            buffer.flip();
+            if (readInt() != MAGIC || readByte() != VERSION || readByte() != kind) {
+                throw new IOException("Illegal snapshot");
+            }
+        }
+
+        /*
+        * Reads from the channel until at least n bytes are available in the buffer
+        */
+        private void require(int n) throws IOException {
+            if (buffer.remaining() >= n) {
+                return;
+            }
+            if (buffer.capacity() < n) {
+                ByteBuffer bigger = ByteBuffer.allocateDirect(n);
+                bigger.put(buffer);
+                buffer = bigger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < n) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Truncated snapshot");
+                }
+            }
+            buffer.flip();
+        }
+
+        byte readByte() throws IOException {
+            require(1);
+            return buffer.get();
+        }
+
+        int readInt() throws IOException {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        double readDouble() throws IOException {
+            require(Double.BYTES);
+            return buffer.getDouble();
+        }
+
+        /*
+        * Reads a count between 1 and max
+        */
+        int readCount(int max) throws IOException {
+            int count = readInt();
+            if (count < 1 || count > max) {
+                throw new IOException("Illegal snapshot");
+            }
+            return count;
+        }
+
+        /*
+        * Decodes a value written by Output.write with the same codec
+        */
+        <T> T read(Codec<T> codec) throws IOException {
+            int size = codec.fixedSize();
+            if (size < 0) {
+                size = readInt();
+                if (size < 0) {
+                    throw new IOException("Illegal snapshot");
+                }
+            }
+            require(size);
+
+            // Show the codec the bytes of the value only
+            final int limit = buffer.limit();
+            final int end = buffer.position() + size;
+            buffer.limit(end);
+            T value = codec.read(buffer);
+            buffer.limit(limit);
+            buffer.position(end);
+            return value;
+        }
+
+        /*
+        * Decodes a value written by Output.writeNullable with the same codec
+        */
+        <T> T readNullable(Codec<T> codec) throws IOException {
+            byte present = readByte();
+            if (present == 0) {
+                return null;
+            }
+            if (present != 1) {
+                throw new IOException("Illegal snapshot");
+            }
+            return read(codec);
+        }
+    }
+}
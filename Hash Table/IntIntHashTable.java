@@ -0,0 +1,346 @@
+import java.util.Arrays;
+
+/*
+* Linear probing hash table specialized for int keys and int values.
+* Keys and values are kept in int[] arrays, so nothing is boxed and no
+* operation allocates. Since every int is a valid key, the state of each
+* bucket (free, full or deleted) is kept in a separate bitmap using 2 bits
+* per bucket instead of a TOMBSTONE object.
+*/
+public class IntIntHashTable {
+    private static final int DEFAULT_CAPACITY = 4;
+    private static final double DEFAUT_LOAD_FACTOR = 0.75;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    // The value of a in linear probe function: ax + b
+    private static final int LINEAR_CONSTANT = 13;
+
+    // Bucket states stored in the bitmap
+    private static final int FREE = 0;
+    private static final int FULL = 1;
+    private static final int TOMBSTONE = 2;
+
+    // Changing load factor
+    private double loadFactor;
+
+    // Capacity is the number of key-value pairs the hash table can hold, always a power of 2
+    private int capacity;
+
+    // capacity - 1, used to compute the bucket index
+    private int mask;
+
+    // Threshold tells us to resize when it reaches a certain value
+    private int threshold;
+
+    // The number of unique key-value pair in the hash table
+    private int keyCount;
+
+    // The number of buckets used by TOMBSTONE and the key-value pairs
+    private int usedBuckets;
+
+    // Value returned by get, put and remove when the key is not present
+    private final int noEntryValue;
+
+    private int[] keys;
+    private int[] values;
+
+    // 2 bits per bucket, 32 buckets per long
+    private long[] states;
+
+    public IntIntHashTable() {
+        this(DEFAULT_CAPACITY, DEFAUT_LOAD_FACTOR, 0);
+    }
+
+    public IntIntHashTable(int capacity) {
+        this(capacity, DEFAUT_LOAD_FACTOR, 0);
+    }
+
+    public IntIntHashTable(int capacity, double loadFactor) {
+        this(capacity, loadFactor, 0);
+    }
+
+    public IntIntHashTable(int capacity, double loadFactor, int noEntryValue) {
+        if (capacity < 0 || capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Illegal capacity");
+        }
+
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        }
+
+        this.loadFactor = loadFactor;
+        this.noEntryValue = noEntryValue;
+        allocate(Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, capacity) - 1) << 1);
+    }
+
+    /*
+    * Helper method which creates empty arrays for the specified capacity
+    */
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        mask = capacity - 1;
+        threshold = (int) (capacity * loadFactor);
+        keys = new int[capacity];
+        values = new int[capacity];
+        states = new long[(capacity + 31) >>> 5];
+    }
+
+    /*
+    * Helper method which returns the next index to be probed
+    */
+    private int probe(int x) {
+        return LINEAR_CONSTANT * x;
+    }
+
+    /*
+    * Returns the index of the first bucket for the key. The key is mixed so that
+    * sequential ids do not fill neighbouring buckets.
+    */
+    private int hashIndex(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private int state(int i) {
+        return (int) (states[i >>> 5] >>> ((i & 31) << 1)) & 3;
+    }
+
+    private void setState(int i, int state) {
+        int shift = (i & 31) << 1;
+        states[i >>> 5] = (states[i >>> 5] & ~(3L << shift)) | ((long) state << shift);
+    }
+
+    /*
+    * Helper method to resize the hash table with new capacity on reaching a threshold.
+    * When most used buckets hold tombstones the key-value pairs are rehashed at the
+    * same capacity instead, so a table of steady size with many removes does not
+    * keep growing.
+    */
+    private void resize() {
+        boolean grow = 2 * keyCount >= usedBuckets;
+        if (grow && capacity == MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Hash table is full");
+        }
+
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        long[] oldStates = states;
+        int oldCapacity = capacity;
+
+        allocate(grow ? capacity << 1 : capacity);
+        keyCount = usedBuckets = 0;
+
+        for (int i = 0; i < oldCapacity; i++) {
+            if (((oldStates[i >>> 5] >>> ((i & 31) << 1)) & 3) == FULL) {
+                insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /*
+    * Returns true if the hash table is empty, otherwise, false
+    */
+    public boolean isEmpty() {
+        return keyCount == 0;
+    }
+
+    /*
+    * Returns the size of the hash table
+    */
+    public int size() {
+        return keyCount;
+    }
+
+    /*
+    * Returns the capacity of the hash table
+    */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /*
+    * Returns the value returned by get, put and remove for absent keys
+    */
+    public int getNoEntryValue() {
+        return noEntryValue;
+    }
+
+    /*
+    * Clears the hash table
+    */
+    public void clear() {
+        Arrays.fill(states, 0L);
+        usedBuckets = keyCount = 0;
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns the no entry value and adds
+    * the new key-value if the key is not present.
+    */
+    public int put(int key, int value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns the no entry value and adds
+    * the new key-value if the key is not present.
+    */
+    public int add(int key, int value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns the no entry value and adds
+    * the new key-value if the key is not present.
+    */
+    public int insert(int key, int value) {
+        if (usedBuckets >= threshold) {
+            resize();
+        }
+
+        final int offset = hashIndex(key);
+
+        for (int i = offset, j = -1, x = 1;; i = (offset + probe(x++)) & mask) {
+            int state = state(i);
+            if (state == TOMBSTONE) {
+                // Remember the first deleted bucket to reuse it
+                if (j == -1) {
+                    j = i;
+                }
+            } else if (state == FULL) {
+                if (keys[i] == key) {
+                    int oldValue = values[i];
+                    if (j == -1) {
+                        values[i] = value;
+                    } else {
+                        // Move the key-value closer to its first bucket
+                        setState(i, TOMBSTONE);
+                        setState(j, FULL);
+                        keys[j] = key;
+                        values[j] = value;
+                    }
+                    return oldValue;
+                }
+            } else {
+                if (j == -1) {
+                    j = i;
+                    usedBuckets++;
+                }
+                setState(j, FULL);
+                keys[j] = key;
+                values[j] = value;
+                keyCount++;
+                return noEntryValue;
+            }
+        }
+    }
+
+    /*
+    * Returns the index of the bucket holding the key, or -1 if it is not present
+    */
+    private int indexOf(int key) {
+        final int offset = hashIndex(key);
+
+        for (int i = offset, x = 1;; i = (offset + probe(x++)) & mask) {
+            int state = state(i);
+            if (state == FREE) {
+                return -1;
+            }
+            if (state == FULL && keys[i] == key) {
+                return i;
+            }
+        }
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean containsKey(int key) {
+        return hasKey(key);
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean hasKey(int key) {
+        return indexOf(key) != -1;
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns the no entry value.
+    */
+    public int get(int key) {
+        int i = indexOf(key);
+        return i == -1 ? noEntryValue : values[i];
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns defaultValue.
+    */
+    public int getOrDefault(int key, int defaultValue) {
+        int i = indexOf(key);
+        return i == -1 ? defaultValue : values[i];
+    }
+
+    /*
+    * Returns the value against the specfied key and removes it if
+    * the key is found. Otherwise, returns the no entry value.
+    */
+    public int remove(int key) {
+        int i = indexOf(key);
+        if (i == -1) {
+            return noEntryValue;
+        }
+        setState(i, TOMBSTONE);
+        keyCount--;
+        return values[i];
+    }
+
+    /*
+    * Returns the keys in the hash table
+    */
+    public int[] keys() {
+        int[] keyArray = new int[keyCount];
+        for (int i = 0, k = 0; i < capacity; i++) {
+            if (state(i) == FULL) {
+                keyArray[k++] = keys[i];
+            }
+        }
+        return keyArray;
+    }
+
+    /*
+    * Returns the values in the hash table
+    */
+    public int[] values() {
+        int[] valueArray = new int[keyCount];
+        for (int i = 0, k = 0; i < capacity; i++) {
+            if (state(i) == FULL) {
+                valueArray[k++] = values[i];
+            }
+        }
+        return valueArray;
+    }
+
+    /*
+    * Returns the String representation of the hash table
+    */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+
+        for (int i = 0; i < capacity; i++) {
+            if (state(i) == FULL) {
+                sb.append(keys[i] + " : " + values[i] + ", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
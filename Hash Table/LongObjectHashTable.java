@@ -0,0 +1,328 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+* Linear probing hash table specialized for long keys. Keys are kept in a
+* long[] array so they are never boxed, and no operation allocates. As with
+* IntIntHashTable, the state of each bucket is kept in a 2 bit per bucket
+* bitmap since every long is a valid key.
+*/
+@SuppressWarnings("unchecked")
+public class LongObjectHashTable<V> {
+    private static final int DEFAULT_CAPACITY = 4;
+    private static final double DEFAUT_LOAD_FACTOR = 0.75;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    // The value of a in linear probe function: ax + b
+    private static final int LINEAR_CONSTANT = 13;
+
+    // Bucket states stored in the bitmap
+    private static final int FREE = 0;
+    private static final int FULL = 1;
+    private static final int TOMBSTONE = 2;
+
+    // Changing load factor
+    private double loadFactor;
+
+    // Capacity is the number of key-value pairs the hash table can hold, always a power of 2
+    private int capacity;
+
+    // capacity - 1, used to compute the bucket index
+    private int mask;
+
+    // Threshold tells us to resize when it reaches a certain value
+    private int threshold;
+
+    // The number of unique key-value pair in the hash table
+    private int keyCount;
+
+    // The number of buckets used by TOMBSTONE and the key-value pairs
+    private int usedBuckets;
+
+    private long[] keys;
+    private V[] values;
+
+    // 2 bits per bucket, 32 buckets per long
+    private long[] states;
+
+    public LongObjectHashTable() {
+        this(DEFAULT_CAPACITY, DEFAUT_LOAD_FACTOR);
+    }
+
+    public LongObjectHashTable(int capacity) {
+        this(capacity, DEFAUT_LOAD_FACTOR);
+    }
+
+    public LongObjectHashTable(int capacity, double loadFactor) {
+        if (capacity < 0 || capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Illegal capacity");
+        }
+
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        }
+
+        this.loadFactor = loadFactor;
+        allocate(Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, capacity) - 1) << 1);
+    }
+
+    /*
+    * Helper method which creates empty arrays for the specified capacity
+    */
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        mask = capacity - 1;
+        threshold = (int) (capacity * loadFactor);
+        keys = new long[capacity];
+        values = (V[]) new Object[capacity];
+        states = new long[(capacity + 31) >>> 5];
+    }
+
+    /*
+    * Helper method which returns the next index to be probed
+    */
+    private int probe(int x) {
+        return LINEAR_CONSTANT * x;
+    }
+
+    /*
+    * Returns the index of the first bucket for the key. The key is mixed so that
+    * sequential ids do not fill neighbouring buckets.
+    */
+    private int hashIndex(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private int state(int i) {
+        return (int) (states[i >>> 5] >>> ((i & 31) << 1)) & 3;
+    }
+
+    private void setState(int i, int state) {
+        int shift = (i & 31) << 1;
+        states[i >>> 5] = (states[i >>> 5] & ~(3L << shift)) | ((long) state << shift);
+    }
+
+    /*
+    * Helper method to resize the hash table with new capacity on reaching a threshold.
+    * When most used buckets hold tombstones the key-value pairs are rehashed at the
+    * same capacity instead, so a table of steady size with many removes does not
+    * keep growing.
+    */
+    private void resize() {
+        boolean grow = 2 * keyCount >= usedBuckets;
+        if (grow && capacity == MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Hash table is full");
+        }
+
+        long[] oldKeys = keys;
+        V[] oldValues = values;
+        long[] oldStates = states;
+        int oldCapacity = capacity;
+
+        allocate(grow ? capacity << 1 : capacity);
+        keyCount = usedBuckets = 0;
+
+        for (int i = 0; i < oldCapacity; i++) {
+            if (((oldStates[i >>> 5] >>> ((i & 31) << 1)) & 3) == FULL) {
+                insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /*
+    * Returns true if the hash table is empty, otherwise, false
+    */
+    public boolean isEmpty() {
+        return keyCount == 0;
+    }
+
+    /*
+    * Returns the size of the hash table
+    */
+    public int size() {
+        return keyCount;
+    }
+
+    /*
+    * Returns the capacity of the hash table
+    */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /*
+    * Clears the hash table
+    */
+    public void clear() {
+        Arrays.fill(states, 0L);
+        Arrays.fill(values, null);
+        usedBuckets = keyCount = 0;
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V put(long key, V value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V add(long key, V value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V insert(long key, V value) {
+        if (usedBuckets >= threshold) {
+            resize();
+        }
+
+        final int offset = hashIndex(key);
+
+        for (int i = offset, j = -1, x = 1;; i = (offset + probe(x++)) & mask) {
+            int state = state(i);
+            if (state == TOMBSTONE) {
+                // Remember the first deleted bucket to reuse it
+                if (j == -1) {
+                    j = i;
+                }
+            } else if (state == FULL) {
+                if (keys[i] == key) {
+                    V oldValue = values[i];
+                    if (j == -1) {
+                        values[i] = value;
+                    } else {
+                        // Move the key-value closer to its first bucket
+                        setState(i, TOMBSTONE);
+                        values[i] = null;
+                        setState(j, FULL);
+                        keys[j] = key;
+                        values[j] = value;
+                    }
+                    return oldValue;
+                }
+            } else {
+                if (j == -1) {
+                    j = i;
+                    usedBuckets++;
+                }
+                setState(j, FULL);
+                keys[j] = key;
+                values[j] = value;
+                keyCount++;
+                return null;
+            }
+        }
+    }
+
+    /*
+    * Returns the index of the bucket holding the key, or -1 if it is not present
+    */
+    private int indexOf(long key) {
+        final int offset = hashIndex(key);
+
+        for (int i = offset, x = 1;; i = (offset + probe(x++)) & mask) {
+            int state = state(i);
+            if (state == FREE) {
+                return -1;
+            }
+            if (state == FULL && keys[i] == key) {
+                return i;
+            }
+        }
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean containsKey(long key) {
+        return hasKey(key);
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean hasKey(long key) {
+        return indexOf(key) != -1;
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns null.
+    */
+    public V get(long key) {
+        int i = indexOf(key);
+        return i == -1 ? null : values[i];
+    }
+
+    /*
+    * Returns the value against the specfied key and removes it if
+    * the key is found. Otherwise, returns null.
+    */
+    public V remove(long key) {
+        int i = indexOf(key);
+        if (i == -1) {
+            return null;
+        }
+        V oldValue = values[i];
+        setState(i, TOMBSTONE);
+        values[i] = null;
+        keyCount--;
+        return oldValue;
+    }
+
+    /*
+    * Returns the keys in the hash table
+    */
+    public long[] keys() {
+        long[] keyArray = new long[keyCount];
+        for (int i = 0, k = 0; i < capacity; i++) {
+            if (state(i) == FULL) {
+                keyArray[k++] = keys[i];
+            }
+        }
+        return keyArray;
+    }
+
+    /*
+    * Returns the list of values in the hash table
+    */
+    public List<V> values() {
+        List<V> valueList = new ArrayList<>(keyCount);
+        for (int i = 0; i < capacity; i++) {
+            if (state(i) == FULL) {
+                valueList.add(values[i]);
+            }
+        }
+        return valueList;
+    }
+
+    /*
+    * Returns the String representation of the hash table
+    */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+
+        for (int i = 0; i < capacity; i++) {
+            if (state(i) == FULL) {
+                sb.append(keys[i] + " : " + values[i] + ", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,740 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/*
+* Linear probing hash table for long keys and long values stored in a memory
+* mapped file.
+*
+* The file starts with a 64 byte header, followed by one state byte per bucket
+* (free, full or deleted) and by the buckets themselves, 16 bytes each for the
+* key and the value. put and remove write straight into the mapping, so the
+* table is never rebuilt when the file is opened again: the operating system
+* pages the buckets in as they are used.
+*
+* force() is the checkpoint. It flushes the mapping and then marks the header
+* clean. Closing the table, or a crash after force() with no change since,
+* leaves the file exactly as of the last force(). If the process dies with
+* unflushed changes, the header is still marked dirty and the next open
+* recounts the keys, but the buckets hold whatever the operating system had
+* written back: the state bytes and the keys and values live in different
+* pages which reach the disk in any order, so a crash after unflushed changes
+* may lose or corrupt any entry, including ones written before the last force().
+* Updates rewrite the value in place and never move an entry, so an update
+* alone cannot lose its key.
+*
+* Resizing builds the new file next to the current one, flushes it and renames
+* it over the current file.
+*/
+public class MappedLongLongHashTable implements AutoCloseable {
+    private static final long DEFAULT_CAPACITY = 16;
+    private static final double DEFAUT_LOAD_FACTOR = 0.75;
+    private static final long MAXIMUM_CAPACITY = 1L << 40;
+
+    // The value of a in linear probe function: ax + b
+    private static final int LINEAR_CONSTANT = 13;
+
+    // Bucket states stored in the file
+    private static final byte FREE = 0;
+    private static final byte FULL = 1;
+    private static final byte TOMBSTONE = 2;
+
+    // Bytes used by a bucket, the key followed by the value
+    private static final int SLOT_SIZE = 16;
+
+    // log2 of the number of buckets in a mapped chunk, a mapping holds at most 2 GB
+    private static final int CHUNK_SHIFT = 26;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    // File header
+    private static final long MAGIC = 0x4C4C4D4150484D31L;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int DIRTY_OFFSET = 12;
+    private static final int CAPACITY_OFFSET = 16;
+    private static final int KEY_COUNT_OFFSET = 24;
+    private static final int USED_BUCKETS_OFFSET = 32;
+    private static final int LOAD_FACTOR_OFFSET = 40;
+    private static final int NO_ENTRY_VALUE_OFFSET = 48;
+
+    // Unmaps a buffer right away instead of waiting for the garbage collector
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not available, the mappings are released by the garbage collector
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    // The file holding the hash table
+    private final Path path;
+
+    // Changing load factor
+    private double loadFactor;
+
+    // Capacity is the number of key-value pairs the hash table can hold, always a power of 2
+    private long capacity;
+
+    // capacity - 1, used to compute the bucket index
+    private long mask;
+
+    // Threshold tells us to resize when it reaches a certain value
+    private long threshold;
+
+    // The number of unique key-value pair in the hash table
+    private long keyCount;
+
+    // The number of buckets used by TOMBSTONE and the key-value pairs
+    private long usedBuckets;
+
+    // Value returned by get, put and remove when the key is not present
+    private long noEntryValue;
+
+    // True once the mapping was changed after the last force()
+    private boolean dirty;
+
+    // The open file, null once the table is closed
+    private FileChannel channel;
+
+    // The header at the start of the file
+    private MappedByteBuffer header;
+
+    // Bucket states of every chunk, one byte per bucket
+    private MappedByteBuffer[] states;
+
+    // Keys and values of every chunk
+    private MappedByteBuffer[] slots;
+
+    /*
+    * Opens the hash table stored in the file, or creates an empty one
+    */
+    public MappedLongLongHashTable(Path path) throws IOException {
+        this(path, DEFAULT_CAPACITY, DEFAUT_LOAD_FACTOR, 0);
+    }
+
+    /*
+    * Opens the hash table stored in the file, or creates an empty one with the
+    * specified settings. The settings of an existing file take precedence.
+    */
+    public MappedLongLongHashTable(Path path, long capacity, double loadFactor, long noEntryValue)
+            throws IOException {
+        if (capacity < 0 || capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Illegal capacity");
+        }
+
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        }
+
+        this.path = path;
+        this.loadFactor = loadFactor;
+        this.noEntryValue = noEntryValue;
+
+        boolean exists = Files.exists(path) && Files.size(path) > 0;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (exists) {
+                load();
+            } else {
+                create(Long.highestOneBit(Math.max(DEFAULT_CAPACITY, capacity) - 1) << 1);
+                force();
+            }
+        } catch (IOException | RuntimeException e) {
+            unmap();
+            channel.close();
+            channel = null;
+            throw e;
+        }
+    }
+
+    /*
+    * Helper method which maps an empty table of the specified capacity
+    */
+    private void create(long capacity) throws IOException {
+        map(capacity);
+        header.putLong(MAGIC_OFFSET, MAGIC);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putDouble(LOAD_FACTOR_OFFSET, loadFactor);
+        header.putLong(NO_ENTRY_VALUE_OFFSET, noEntryValue);
+        header.putInt(DIRTY_OFFSET, 1);
+        keyCount = usedBuckets = 0;
+        dirty = true;
+    }
+
+    /*
+    * Helper method which maps the table stored in the file
+    */
+    private void load() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        if (buffer.hasRemaining() || buffer.getLong(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("Not a hash table file: " + path);
+        }
+        if (buffer.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("Unsupported hash table file version: " + path);
+        }
+
+        long capacity = buffer.getLong(CAPACITY_OFFSET);
+        if (capacity <= 0 || capacity > MAXIMUM_CAPACITY || Long.bitCount(capacity) != 1
+                || channel.size() != fileSize(capacity)) {
+            throw new IOException("Corrupted hash table file: " + path);
+        }
+
+        double loadFactor = buffer.getDouble(LOAD_FACTOR_OFFSET);
+        // Also rejects NaN, which would never start a resize
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IOException("Corrupted hash table file: " + path);
+        }
+        this.loadFactor = loadFactor;
+        noEntryValue = buffer.getLong(NO_ENTRY_VALUE_OFFSET);
+        map(capacity);
+
+        if (buffer.getInt(DIRTY_OFFSET) != 0) {
+            // The last changes were not checkpointed, the counters cannot be trusted
+            recount();
+            dirty = true;
+        } else {
+            keyCount = buffer.getLong(KEY_COUNT_OFFSET);
+            usedBuckets = buffer.getLong(USED_BUCKETS_OFFSET);
+        }
+    }
+
+    /*
+    * Helper method which maps the header, the states and the buckets of a table
+    * of the specified capacity
+    */
+    private void map(long capacity) throws IOException {
+        this.capacity = capacity;
+        mask = capacity - 1;
+        threshold = (long) (capacity * loadFactor);
+
+        int chunks = (int) Math.max(1, capacity >>> CHUNK_SHIFT);
+        long chunkBuckets = Math.min(capacity, 1L << CHUNK_SHIFT);
+
+        // Mapping past the end of the file grows it with zeros, so every bucket starts FREE
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(CAPACITY_OFFSET, capacity);
+        states = new MappedByteBuffer[chunks];
+        slots = new MappedByteBuffer[chunks];
+        for (int c = 0; c < chunks; c++) {
+            states[c] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + c * chunkBuckets,
+                    chunkBuckets);
+            slots[c] = channel.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_SIZE + capacity + c * chunkBuckets * SLOT_SIZE, chunkBuckets * SLOT_SIZE);
+            slots[c].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /*
+    * Returns the size of the file of a table of the specified capacity
+    */
+    private static long fileSize(long capacity) {
+        return HEADER_SIZE + capacity + capacity * SLOT_SIZE;
+    }
+
+    /*
+    * Helper method which counts the keys and the used buckets from the states
+    */
+    private void recount() {
+        keyCount = usedBuckets = 0;
+        for (long i = 0; i < capacity; i++) {
+            byte state = state(i);
+            if (state != FREE) {
+                usedBuckets++;
+                if (state == FULL) {
+                    keyCount++;
+                }
+            }
+        }
+    }
+
+    /*
+    * Helper method which releases the mappings
+    */
+    private void unmap() {
+        if (INVOKE_CLEANER != null) {
+            try {
+                if (header != null) {
+                    INVOKE_CLEANER.invoke(UNSAFE, header);
+                }
+                for (int c = 0; states != null && c < states.length; c++) {
+                    INVOKE_CLEANER.invoke(UNSAFE, states[c]);
+                    INVOKE_CLEANER.invoke(UNSAFE, slots[c]);
+                }
+            } catch (ReflectiveOperationException e) {
+                // Left to the garbage collector
+            }
+        }
+        header = null;
+        states = null;
+        slots = null;
+    }
+
+    private void ensureOpen() {
+        if (channel == null) {
+            throw new IllegalStateException("Hash table is closed");
+        }
+    }
+
+    /*
+    * Helper method which marks the file dirty before its first change after a checkpoint
+    */
+    private void markDirty() {
+        if (!dirty) {
+            // Flushed at once, the file must never look clean while holding unflushed changes
+            header.putInt(DIRTY_OFFSET, 1);
+            header.force();
+            dirty = true;
+        }
+    }
+
+    /*
+    * Helper method which returns the next index to be probed
+    */
+    private long probe(long x) {
+        return LINEAR_CONSTANT * x;
+    }
+
+    /*
+    * Returns the index of the first bucket for the key. The key is mixed so that
+    * sequential ids do not fill neighbouring buckets.
+    */
+    private long hashIndex(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (h ^ (h >>> 32)) & mask;
+    }
+
+    private byte state(long i) {
+        return states[(int) (i >>> CHUNK_SHIFT)].get((int) (i & CHUNK_MASK));
+    }
+
+    private void setState(long i, byte state) {
+        states[(int) (i >>> CHUNK_SHIFT)].put((int) (i & CHUNK_MASK), state);
+    }
+
+    private long key(long i) {
+        return slots[(int) (i >>> CHUNK_SHIFT)].getLong((int) (i & CHUNK_MASK) * SLOT_SIZE);
+    }
+
+    private long value(long i) {
+        return slots[(int) (i >>> CHUNK_SHIFT)].getLong((int) (i & CHUNK_MASK) * SLOT_SIZE + 8);
+    }
+
+    private void setEntry(long i, long key, long value) {
+        MappedByteBuffer chunk = slots[(int) (i >>> CHUNK_SHIFT)];
+        int offset = (int) (i & CHUNK_MASK) * SLOT_SIZE;
+        chunk.putLong(offset, key);
+        chunk.putLong(offset + 8, value);
+    }
+
+    private void setValue(long i, long value) {
+        slots[(int) (i >>> CHUNK_SHIFT)].putLong((int) (i & CHUNK_MASK) * SLOT_SIZE + 8, value);
+    }
+
+    /*
+    * Helper method to resize the hash table with new capacity on reaching a threshold.
+    * When most used buckets hold tombstones the key-value pairs are rehashed at the
+    * same capacity instead, so the file of a table of steady size with many removes
+    * does not keep growing. The new table is written to a temporary file which
+    * replaces the current one once it is complete, so a crash during the resize
+    * leaves the old file intact. If building the new table fails the table keeps
+    * using the old file, if replacing the old file fails the table is closed.
+    */
+    private void resize() throws IOException {
+        boolean grow = 2 * keyCount >= usedBuckets;
+        if (grow && capacity == MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Hash table is full");
+        }
+
+        Path resizePath = path.resolveSibling(path.getFileName() + ".resize");
+        FileChannel oldChannel = channel;
+        MappedByteBuffer oldHeader = header;
+        MappedByteBuffer[] oldStates = states;
+        MappedByteBuffer[] oldSlots = slots;
+        long oldCapacity = capacity;
+        long oldKeyCount = keyCount;
+        long oldUsedBuckets = usedBuckets;
+        boolean oldDirty = dirty;
+
+        channel = null;
+        header = null;
+        states = null;
+        slots = null;
+        try {
+            channel = FileChannel.open(resizePath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            create(grow ? oldCapacity << 1 : oldCapacity);
+
+            long oldChunkBuckets = Math.min(oldCapacity, 1L << CHUNK_SHIFT);
+            for (int c = 0; c < oldStates.length; c++) {
+                for (int b = 0; b < oldChunkBuckets; b++) {
+                    if (oldStates[c].get(b) == FULL) {
+                        insertEntry(oldSlots[c].getLong(b * SLOT_SIZE), oldSlots[c].getLong(b * SLOT_SIZE + 8));
+                    }
+                }
+            }
+            force();
+        } catch (Throwable e) {
+            // Go back to the old file and drop the new one
+            unmap();
+            FileChannel resizeChannel = channel;
+            channel = oldChannel;
+            header = oldHeader;
+            states = oldStates;
+            slots = oldSlots;
+            capacity = oldCapacity;
+            mask = oldCapacity - 1;
+            threshold = (long) (oldCapacity * loadFactor);
+            keyCount = oldKeyCount;
+            usedBuckets = oldUsedBuckets;
+            dirty = oldDirty;
+            try {
+                if (resizeChannel != null) {
+                    resizeChannel.close();
+                }
+                Files.deleteIfExists(resizePath);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+
+        // Release the old file before replacing it
+        MappedByteBuffer newHeader = header;
+        MappedByteBuffer[] newStates = states;
+        MappedByteBuffer[] newSlots = slots;
+        header = oldHeader;
+        states = oldStates;
+        slots = oldSlots;
+        unmap();
+        oldChannel.close();
+        header = newHeader;
+        states = newStates;
+        slots = newSlots;
+
+        try {
+            Files.move(resizePath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            // The old file is unmapped, so the table cannot go on with either file
+            unmap();
+            channel.close();
+            channel = null;
+            throw e;
+        }
+    }
+
+    /*
+    * Flushes every change to the file and marks it clean. After force() returns,
+    * reopening the file gives back the table as it is now, even after a crash.
+    */
+    public void force() throws IOException {
+        ensureOpen();
+        for (int c = 0; c < states.length; c++) {
+            states[c].force();
+            slots[c].force();
+        }
+        header.putLong(KEY_COUNT_OFFSET, keyCount);
+        header.putLong(USED_BUCKETS_OFFSET, usedBuckets);
+        header.putInt(DIRTY_OFFSET, 0);
+        header.force();
+        dirty = false;
+    }
+
+    /*
+    * Flushes the table with force() and closes the file. Any further operation
+    * throws IllegalStateException. Closing a closed table does nothing.
+    */
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            force();
+        } finally {
+            unmap();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /*
+    * Returns the file holding the hash table
+    */
+    public Path getPath() {
+        return path;
+    }
+
+    /*
+    * Returns true if the hash table is empty, otherwise, false
+    */
+    public boolean isEmpty() {
+        return keyCount == 0;
+    }
+
+    /*
+    * Returns the size of the hash table
+    */
+    public long size() {
+        return keyCount;
+    }
+
+    /*
+    * Returns the capacity of the hash table
+    */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /*
+    * Returns the value returned by get, put and remove for absent keys
+    */
+    public long getNoEntryValue() {
+        return noEntryValue;
+    }
+
+    /*
+    * Returns true once the hash table is closed
+    */
+    public boolean isClosed() {
+        return channel == null;
+    }
+
+    /*
+    * Clears the hash table
+    */
+    public void clear() {
+        ensureOpen();
+        markDirty();
+        for (MappedByteBuffer chunk : states) {
+            for (int b = 0; b < chunk.capacity(); b++) {
+                chunk.put(b, FREE);
+            }
+        }
+        usedBuckets = keyCount = 0;
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns the no entry value and adds
+    * the new key-value if the key is not present.
+    */
+    public long put(long key, long value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns the no entry value and adds
+    * the new key-value if the key is not present.
+    */
+    public long add(long key, long value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns the no entry value and adds
+    * the new key-value if the key is not present.
+    */
+    public long insert(long key, long value) {
+        ensureOpen();
+
+        if (usedBuckets >= threshold) {
+            try {
+                resize();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return insertEntry(key, value);
+    }
+
+    /*
+    * Helper method which adds the key-value pair without checking the threshold
+    */
+    private long insertEntry(long key, long value) {
+        markDirty();
+
+        final long offset = hashIndex(key);
+
+        for (long i = offset, j = -1, x = 1;; i = (offset + probe(x++)) & mask) {
+            byte state = state(i);
+            if (state == TOMBSTONE) {
+                // Remember the first deleted bucket to reuse it
+                if (j == -1) {
+                    j = i;
+                }
+            } else if (state == FULL) {
+                if (key(i) == key) {
+                    // Update in place, moving the key-value to an earlier tombstone
+                    // would take writes to two pages which may reach the disk apart
+                    long oldValue = value(i);
+                    setValue(i, value);
+                    return oldValue;
+                }
+            } else {
+                if (j == -1) {
+                    j = i;
+                    usedBuckets++;
+                }
+                setEntry(j, key, value);
+                setState(j, FULL);
+                keyCount++;
+                return noEntryValue;
+            }
+        }
+    }
+
+    /*
+    * Returns the index of the bucket holding the key, or -1 if it is not present
+    */
+    private long indexOf(long key) {
+        ensureOpen();
+
+        final long offset = hashIndex(key);
+
+        for (long i = offset, x = 1;; i = (offset + probe(x++)) & mask) {
+            byte state = state(i);
+            if (state == FREE) {
+                return -1;
+            }
+            if (state == FULL && key(i) == key) {
+                return i;
+            }
+        }
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean containsKey(long key) {
+        return hasKey(key);
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean hasKey(long key) {
+        return indexOf(key) != -1;
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns the no entry value.
+    */
+    public long get(long key) {
+        long i = indexOf(key);
+        return i == -1 ? noEntryValue : value(i);
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns defaultValue.
+    */
+    public long getOrDefault(long key, long defaultValue) {
+        long i = indexOf(key);
+        return i == -1 ? defaultValue : value(i);
+    }
+
+    /*
+    * Returns the value against the specfied key and removes it if
+    * the key is found. Otherwise, returns the no entry value.
+    */
+    public long remove(long key) {
+        long i = indexOf(key);
+        if (i == -1) {
+            return noEntryValue;
+        }
+        markDirty();
+        setState(i, TOMBSTONE);
+        keyCount--;
+        return value(i);
+    }
+
+    /*
+    * Returns the keys in the hash table
+    */
+    public long[] keys() {
+        long[] keyArray = new long[toArraySize()];
+        for (long i = 0, k = 0; i < capacity; i++) {
+            if (state(i) == FULL) {
+                keyArray[(int) k++] = key(i);
+            }
+        }
+        return keyArray;
+    }
+
+    /*
+    * Returns the values in the hash table
+    */
+    public long[] values() {
+        long[] valueArray = new long[toArraySize()];
+        for (long i = 0, k = 0; i < capacity; i++) {
+            if (state(i) == FULL) {
+                valueArray[(int) k++] = value(i);
+            }
+        }
+        return valueArray;
+    }
+
+    /*
+    * Helper method which checks that the keys or the values fit in an array
+    */
+    private int toArraySize() {
+        ensureOpen();
+        if (keyCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Hash table is too large for an array");
+        }
+        return (int) keyCount;
+    }
+
+    /*
+    * Returns the String representation of the hash table
+    */
+    @Override
+    public String toString() {
+        if (channel == null) {
+            return "{closed}";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+
+        for (long i = 0; i < capacity; i++) {
+            if (state(i) == FULL) {
+                sb.append(key(i) + " : " + value(i) + ", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,497 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+* Linear probing hash table for long keys and long values kept outside of the
+* Java heap.
+*
+* Keys and values live in direct ByteBuffers, 16 bytes per bucket, next to a
+* state byte per bucket (free, full or deleted). The heap only holds a handful
+* of buffer objects whatever the size of the table, so the garbage collector
+* never scans or copies the entries. A direct buffer holds at most 2 GB, so the
+* buckets are split into chunks of 2^26 and the table can grow past that.
+*
+* The native memory is released by close(), or by the garbage collector once
+* the table is unreachable if close() is never called. Direct memory is limited
+* by -XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+*/
+public class OffHeapLongLongHashTable implements AutoCloseable {
+    private static final long DEFAULT_CAPACITY = 16;
+    private static final double DEFAUT_LOAD_FACTOR = 0.75;
+    private static final long MAXIMUM_CAPACITY = 1L << 40;
+
+    // The value of a in linear probe function: ax + b
+    private static final int LINEAR_CONSTANT = 13;
+
+    // Bucket states stored in the state buffers
+    private static final byte FREE = 0;
+    private static final byte FULL = 1;
+    private static final byte TOMBSTONE = 2;
+
+    // Bytes used by a bucket in the slot buffers, the key followed by the value
+    private static final int SLOT_SIZE = 16;
+
+    // log2 of the number of buckets in a chunk, 2^26 buckets take 1 GB of slots
+    private static final int CHUNK_SHIFT = 26;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    // Frees a direct buffer right away instead of waiting for the garbage collector
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not available, the buffers are released by the garbage collector
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    // Changing load factor
+    private double loadFactor;
+
+    // Capacity is the number of key-value pairs the hash table can hold, always a power of 2
+    private long capacity;
+
+    // capacity - 1, used to compute the bucket index
+    private long mask;
+
+    // Threshold tells us to resize when it reaches a certain value
+    private long threshold;
+
+    // The number of unique key-value pair in the hash table
+    private long keyCount;
+
+    // The number of buckets used by TOMBSTONE and the key-value pairs
+    private long usedBuckets;
+
+    // Value returned by get, put and remove when the key is not present
+    private final long noEntryValue;
+
+    // Keys and values of every chunk, null once the table is closed
+    private ByteBuffer[] slots;
+
+    // Bucket states of every chunk, one byte per bucket
+    private ByteBuffer[] states;
+
+    public OffHeapLongLongHashTable() {
+        this(DEFAULT_CAPACITY, DEFAUT_LOAD_FACTOR, 0);
+    }
+
+    public OffHeapLongLongHashTable(long capacity) {
+        this(capacity, DEFAUT_LOAD_FACTOR, 0);
+    }
+
+    public OffHeapLongLongHashTable(long capacity, double loadFactor) {
+        this(capacity, loadFactor, 0);
+    }
+
+    public OffHeapLongLongHashTable(long capacity, double loadFactor, long noEntryValue) {
+        if (capacity < 0 || capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Illegal capacity");
+        }
+
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        }
+
+        this.loadFactor = loadFactor;
+        this.noEntryValue = noEntryValue;
+        allocate(Long.highestOneBit(Math.max(DEFAULT_CAPACITY, capacity) - 1) << 1);
+    }
+
+    /*
+    * Helper method which creates empty buffers for the specified capacity. The
+    * fields are only changed once every buffer is allocated, so a table running
+    * out of direct memory keeps its current buffers.
+    */
+    private void allocate(long capacity) {
+        int chunks = (int) Math.max(1, capacity >>> CHUNK_SHIFT);
+        int chunkBuckets = (int) Math.min(capacity, 1L << CHUNK_SHIFT);
+        ByteBuffer[] newSlots = new ByteBuffer[chunks];
+        ByteBuffer[] newStates = new ByteBuffer[chunks];
+        try {
+            for (int c = 0; c < chunks; c++) {
+                // Direct buffers are zeroed, so every bucket starts FREE
+                newSlots[c] = ByteBuffer.allocateDirect(chunkBuckets * SLOT_SIZE).order(ByteOrder.nativeOrder());
+                newStates[c] = ByteBuffer.allocateDirect(chunkBuckets);
+            }
+        } catch (OutOfMemoryError e) {
+            free(newSlots);
+            free(newStates);
+            throw e;
+        }
+
+        this.capacity = capacity;
+        mask = capacity - 1;
+        threshold = (long) (capacity * loadFactor);
+        slots = newSlots;
+        states = newStates;
+    }
+
+    /*
+    * Helper method which releases the native memory of the buffers, skipping the
+    * null ones
+    */
+    private static void free(ByteBuffer[] buffers) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        for (ByteBuffer buffer : buffers) {
+            if (buffer == null) {
+                continue;
+            }
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } catch (ReflectiveOperationException e) {
+                // Left to the garbage collector
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (slots == null) {
+            throw new IllegalStateException("Hash table is closed");
+        }
+    }
+
+    /*
+    * Helper method which returns the next index to be probed
+    */
+    private long probe(long x) {
+        return LINEAR_CONSTANT * x;
+    }
+
+    /*
+    * Returns the index of the first bucket for the key. The key is mixed so that
+    * sequential ids do not fill neighbouring buckets.
+    */
+    private long hashIndex(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (h ^ (h >>> 32)) & mask;
+    }
+
+    private byte state(long i) {
+        return states[(int) (i >>> CHUNK_SHIFT)].get((int) (i & CHUNK_MASK));
+    }
+
+    private void setState(long i, byte state) {
+        states[(int) (i >>> CHUNK_SHIFT)].put((int) (i & CHUNK_MASK), state);
+    }
+
+    private long key(long i) {
+        return slots[(int) (i >>> CHUNK_SHIFT)].getLong((int) (i & CHUNK_MASK) * SLOT_SIZE);
+    }
+
+    private long value(long i) {
+        return slots[(int) (i >>> CHUNK_SHIFT)].getLong((int) (i & CHUNK_MASK) * SLOT_SIZE + 8);
+    }
+
+    private void setEntry(long i, long key, long value) {
+        ByteBuffer chunk = slots[(int) (i >>> CHUNK_SHIFT)];
+        int offset = (int) (i & CHUNK_MASK) * SLOT_SIZE;
+        chunk.putLong(offset, key);
+        chunk.putLong(offset + 8, value);
+    }
+
+    private void setValue(long i, long value) {
+        slots[(int) (i >>> CHUNK_SHIFT)].putLong((int) (i & CHUNK_MASK) * SLOT_SIZE + 8, value);
+    }
+
+    /*
+    * Helper method to resize the hash table with new capacity on reaching a threshold.
+    * When most used buckets hold tombstones the key-value pairs are rehashed at the
+    * same capacity instead, so a table of steady size with many removes does not
+    * keep doubling its native memory.
+    */
+    private void resize() {
+        boolean grow = 2 * keyCount >= usedBuckets;
+        if (grow && capacity == MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Hash table is full");
+        }
+
+        ByteBuffer[] oldSlots = slots;
+        ByteBuffer[] oldStates = states;
+        int oldChunkBuckets = oldStates[0].capacity();
+
+        // Throws before changing anything if the new buffers do not fit, the
+        // rehash below only writes into them and cannot fail
+        allocate(grow ? capacity << 1 : capacity);
+        keyCount = usedBuckets = 0;
+
+        for (int c = 0; c < oldSlots.length; c++) {
+            for (int b = 0; b < oldChunkBuckets; b++) {
+                if (oldStates[c].get(b) == FULL) {
+                    insert(oldSlots[c].getLong(b * SLOT_SIZE), oldSlots[c].getLong(b * SLOT_SIZE + 8));
+                }
+            }
+        }
+
+        free(oldSlots);
+        free(oldStates);
+    }
+
+    /*
+    * Returns true if the hash table is empty, otherwise, false
+    */
+    public boolean isEmpty() {
+        return keyCount == 0;
+    }
+
+    /*
+    * Returns the size of the hash table
+    */
+    public long size() {
+        return keyCount;
+    }
+
+    /*
+    * Returns the capacity of the hash table
+    */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /*
+    * Returns the value returned by get, put and remove for absent keys
+    */
+    public long getNoEntryValue() {
+        return noEntryValue;
+    }
+
+    /*
+    * Returns true once the hash table is closed
+    */
+    public boolean isClosed() {
+        return slots == null;
+    }
+
+    /*
+    * Clears the hash table
+    */
+    public void clear() {
+        ensureOpen();
+        for (ByteBuffer chunk : states) {
+            for (int b = 0; b < chunk.capacity(); b++) {
+                chunk.put(b, FREE);
+            }
+        }
+        usedBuckets = keyCount = 0;
+    }
+
+    /*
+    * Releases the native memory of the hash table. Any further operation throws
+    * IllegalStateException. Closing a closed table does nothing.
+    */
+    @Override
+    public void close() {
+        if (slots == null) {
+            return;
+        }
+        ByteBuffer[] oldSlots = slots;
+        ByteBuffer[] oldStates = states;
+        slots = null;
+        states = null;
+        keyCount = usedBuckets = 0;
+        free(oldSlots);
+        free(oldStates);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns the no entry value and adds
+    * the new key-value if the key is not present.
+    */
+    public long put(long key, long value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns the no entry value and adds
+    * the new key-value if the key is not present.
+    */
+    public long add(long key, long value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns the no entry value and adds
+    * the new key-value if the key is not present.
+    */
+    public long insert(long key, long value) {
+        ensureOpen();
+
+        if (usedBuckets >= threshold) {
+            resize();
+        }
+
+        final long offset = hashIndex(key);
+
+        for (long i = offset, j = -1, x = 1;; i = (offset + probe(x++)) & mask) {
+            byte state = state(i);
+            if (state == TOMBSTONE) {
+                // Remember the first deleted bucket to reuse it
+                if (j == -1) {
+                    j = i;
+                }
+            } else if (state == FULL) {
+                if (key(i) == key) {
+                    long oldValue = value(i);
+                    if (j == -1) {
+                        setValue(i, value);
+                    } else {
+                        // Move the key-value closer to its first bucket
+                        setState(i, TOMBSTONE);
+                        setState(j, FULL);
+                        setEntry(j, key, value);
+                    }
+                    return oldValue;
+                }
+            } else {
+                if (j == -1) {
+                    j = i;
+                    usedBuckets++;
+                }
+                setState(j, FULL);
+                setEntry(j, key, value);
+                keyCount++;
+                return noEntryValue;
+            }
+        }
+    }
+
+    /*
+    * Returns the index of the bucket holding the key, or -1 if it is not present
+    */
+    private long indexOf(long key) {
+        ensureOpen();
+
+        final long offset = hashIndex(key);
+
+        for (long i = offset, x = 1;; i = (offset + probe(x++)) & mask) {
+            byte state = state(i);
+            if (state == FREE) {
+                return -1;
+            }
+            if (state == FULL && key(i) == key) {
+                return i;
+            }
+        }
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean containsKey(long key) {
+        return hasKey(key);
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean hasKey(long key) {
+        return indexOf(key) != -1;
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns the no entry value.
+    */
+    public long get(long key) {
+        long i = indexOf(key);
+        return i == -1 ? noEntryValue : value(i);
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns defaultValue.
+    */
+    public long getOrDefault(long key, long defaultValue) {
+        long i = indexOf(key);
+        return i == -1 ? defaultValue : value(i);
+    }
+
+    /*
+    * Returns the value against the specfied key and removes it if
+    * the key is found. Otherwise, returns the no entry value.
+    */
+    public long remove(long key) {
+        long i = indexOf(key);
+        if (i == -1) {
+            return noEntryValue;
+        }
+        setState(i, TOMBSTONE);
+        keyCount--;
+        return value(i);
+    }
+
+    /*
+    * Returns the keys in the hash table
+    */
+    public long[] keys() {
+        long[] keyArray = new long[toArraySize()];
+        for (long i = 0, k = 0; i < capacity; i++) {
+            if (state(i) == FULL) {
+                keyArray[(int) k++] = key(i);
+            }
+        }
+        return keyArray;
+    }
+
+    /*
+    * Returns the values in the hash table
+    */
+    public long[] values() {
+        long[] valueArray = new long[toArraySize()];
+        for (long i = 0, k = 0; i < capacity; i++) {
+            if (state(i) == FULL) {
+                valueArray[(int) k++] = value(i);
+            }
+        }
+        return valueArray;
+    }
+
+    /*
+    * Helper method which checks that the keys or the values fit in an array
+    */
+    private int toArraySize() {
+        ensureOpen();
+        if (keyCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Hash table is too large for an array");
+        }
+        return (int) keyCount;
+    }
+
+    /*
+    * Returns the String representation of the hash table
+    */
+    @Override
+    public String toString() {
+        if (slots == null) {
+            return "{closed}";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+
+        for (long i = 0; i < capacity; i++) {
+            if (state(i) == FULL) {
+                sb.append(key(i) + " : " + value(i) + ", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -1,11 +1,29 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
 @SuppressWarnings("unchecked")
 public class QuadraticProbingHashTable<K, V> {
     private static final int DEFAULT_CAPACITY = 3;
     private static final double DEFAUT_LOAD_FACTOR = 0.75;
 
+    // Largest power of 2 capacity, growing stops there
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    // Minimum number of key-value pairs placed in parallel by fromArrays
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    // Atomic access to the bucket owners of a parallel fromArrays
+    private static final VarHandle OWNERS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    // Number of buckets of the old table moved by every operation during an incremental rehash
+    private static final int REHASH_STEP = 16;
+
+    // Number of keys whose first buckets are loaded together by getAll and putAll
+    private static final int BATCH_SIZE = 16;
+
     // Changing load factor
     private double loadFactor;
 
@@ -29,6 +47,27 @@ public class QuadraticProbingHashTable<K, V> {
     // Represents a deleted key-value pair
     private final K TOMBSTONE = (K) new Object();
 
+    // capacity - 1, used for indexing
+    private int mask;
+
+    // Computes the hashes of the keys
+    private final HashStrategy<? super K> hashStrategy;
+
+    // If true, resize only allocates the new table and the following operations
+    // move the key-value pairs into it a few buckets at a time
+    private boolean incrementalRehash;
+
+    // The old table while an incremental rehash is running, otherwise null
+    private K[] rehashKeys;
+    private V[] rehashValues;
+
+    // The next bucket of the old table to be moved
+    private int rehashIndex;
+
+    // The number of resizes and the total time spent in them, reported by metrics()
+    private long resizeCount;
+    private long resizeNanos;
+
     public QuadraticProbingHashTable() {
         this(DEFAULT_CAPACITY, DEFAUT_LOAD_FACTOR);
     }
@@ -38,6 +77,18 @@ public class QuadraticProbingHashTable<K, V> {
     }
 
     public QuadraticProbingHashTable(int capacity, double loadFactor) {
+        this(capacity, loadFactor, false);
+    }
+
+    /*
+    * The capacity is a power of 2 in either case. If powerOfTwo is true, the key
+    * hashes are mixed before masking so that the high bits of hashCode() are not lost.
+    */
+    public QuadraticProbingHashTable(int capacity, double loadFactor, boolean powerOfTwo) {
+        this(capacity, loadFactor, powerOfTwo ? HashStrategy.fibonacci() : HashStrategy.identity());
+    }
+
+    public QuadraticProbingHashTable(int capacity, double loadFactor, HashStrategy<? super K> hashStrategy) {
         if (capacity < 0) {
             throw new IllegalArgumentException("Illegal capacity");
         }
@@ -46,7 +97,16 @@ public class QuadraticProbingHashTable<K, V> {
             throw new IllegalArgumentException("Illegal maxLoadFactor");
         }
 
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Illegal hashStrategy");
+        }
+
+        if (capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Illegal capacity");
+        }
+
         this.loadFactor = loadFactor;
+        this.hashStrategy = hashStrategy;
         this.capacity = Math.max(DEFAULT_CAPACITY, capacity);
         adjustCapacity();
         threshold = (int) (this.capacity * this.loadFactor);
@@ -75,35 +135,94 @@ public class QuadraticProbingHashTable<K, V> {
     */
     private void adjustCapacity() {
         int pow2 = Integer.highestOneBit(capacity);
-        if (pow2 == capacity) {
-            return;
+        if (pow2 != capacity) {
+            increaseCapacity();
         }
-        increaseCapacity();
+        mask = capacity - 1;
     }
 
     /*
-    * Helper method which increases the capacity to be the next power of 2
+    * Helper method which increases the capacity to be the next power of 2, up to
+    * MAXIMUM_CAPACITY
     */
     private void increaseCapacity() {
+        if (capacity >= MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Hash table is full");
+        }
         capacity = nextPowerOfTwo(capacity);
     }
 
     /*
-    * Returns the hash value within 1 to N-1
+    * Returns the hash value within 1 to N-1.
+    * The capacity is a power of 2, so masking gives the same result as
+    * (keyHash & 0x7FFFFFFF) % capacity without the division.
     */
     private int normalizeIndex(int keyHash) {
-        return (keyHash & 0x7FFFFFFF) % capacity;
+        return keyHash & mask;
+    }
+
+    /*
+    * Returns the hash value within 1 to N-1 for a table of the specified capacity
+    */
+    private int normalizeIndex(int keyHash, int capacity) {
+        return keyHash & (capacity - 1);
+    }
+
+    /*
+    * Returns the hash of the key used to find its first bucket
+    */
+    private int keyHash(K key) {
+        return hashStrategy.hash(key);
     }
 
     /*
     * Helper method to resize the hash table with new capacity on reaching a threshold 
     */
     private void resize() {
-        increaseCapacity();
-        adjustCapacity();
+        long start = System.nanoTime();
+        growTable();
+        resizeCount++;
+        resizeNanos += System.nanoTime() - start;
+    }
+
+    /*
+    * Helper method which allocates a bigger table, or one of the same capacity when
+    * most used buckets hold tombstones, and moves the key-value pairs into it
+    */
+    private void growTable() {
+        // Only one rehash can run at a time
+        if (rehashKeys != null) {
+            finishRehash();
+        }
 
+        // When most used buckets hold tombstones the key-value pairs are rehashed at
+        // the same capacity instead, so a table of steady size with many removes
+        // does not keep growing
+        if (2 * keyCount >= usedBuckets) {
+            increaseCapacity();
+            adjustCapacity();
+        }
+        rebuildTable();
+    }
+
+    /*
+    * Helper method which moves the key-value pairs into a new table of the current
+    * capacity, leaving the tombstones behind
+    */
+    private void rebuildTable() {
         threshold = (int) (this.capacity * this.loadFactor);
 
+        if (incrementalRehash) {
+            // Keep the old table aside, rehashStep moves its content over time
+            rehashKeys = keys;
+            rehashValues = values;
+            rehashIndex = 0;
+            keys = (K[]) new Object[this.capacity];
+            values = (V[]) new Object[this.capacity];
+            usedBuckets = 0;
+            return;
+        }
+
         K[] oldKeys = (K[]) new Object[this.capacity];
         V[] oldValues = (V[]) new Object[this.capacity];
 
@@ -128,6 +247,93 @@ public class QuadraticProbingHashTable<K, V> {
         }
     }
 
+    /*
+    * Turns incremental rehashing on or off. When it is on, a resize only allocates
+    * the bigger table and every following put, get or remove moves at most
+    * REHASH_STEP buckets of the old table into it. Until the old table is empty,
+    * lookups check both tables, so no single operation pays for the whole rehash.
+    */
+    public void setIncrementalRehash(boolean incrementalRehash) {
+        if (!incrementalRehash && rehashKeys != null) {
+            finishRehash();
+        }
+        this.incrementalRehash = incrementalRehash;
+    }
+
+    /*
+    * Returns true while an incremental rehash is running
+    */
+    public boolean isRehashing() {
+        return rehashKeys != null;
+    }
+
+    /*
+    * Helper method which moves up to REHASH_STEP buckets of the old table to the new one
+    */
+    private void rehashStep() {
+        int end = Math.min(rehashIndex + REHASH_STEP, rehashKeys.length);
+        for (; rehashIndex < end; rehashIndex++) {
+            K key = rehashKeys[rehashIndex];
+            if (key != null && key != TOMBSTONE) {
+                // insertEntry counts the key-value pair again
+                keyCount--;
+                insertEntry(key, rehashValues[rehashIndex]);
+
+                // Probe sequences of the old table may go through this bucket
+                rehashKeys[rehashIndex] = TOMBSTONE;
+                rehashValues[rehashIndex] = null;
+            }
+        }
+
+        if (rehashIndex == rehashKeys.length) {
+            rehashKeys = null;
+            rehashValues = null;
+        }
+    }
+
+    /*
+    * Helper method which moves everything left in the old table to the new one
+    */
+    private void finishRehash() {
+        while (rehashKeys != null) {
+            rehashStep();
+        }
+    }
+
+    /*
+    * Returns the index of the key in the old table, or -1 if it is not there.
+    * Keys are not relocated in the old table, a key moved behind rehashIndex
+    * would never reach the new table.
+    */
+    private int rehashIndexOf(K key) {
+        final int length = rehashKeys.length;
+        final int offset = normalizeIndex(keyHash(key), length);
+
+        for (int i = offset, x = 1;; i = normalizeIndex(offset + probe(x++), length)) {
+            if (rehashKeys[i] == null) {
+                return -1;
+            }
+            if (rehashKeys[i] != TOMBSTONE && rehashKeys[i].equals(key)) {
+                return i;
+            }
+        }
+    }
+
+    /*
+    * Removes the key from the old table and returns its value, or null if it is not there
+    */
+    private V rehashRemove(K key) {
+        int i = rehashIndexOf(key);
+        if (i == -1) {
+            return null;
+        }
+        V oldValue = rehashValues[i];
+        rehashKeys[i] = TOMBSTONE;
+        rehashValues[i] = null;
+        keyCount--;
+        return oldValue;
+    }
+
     /*
     * Returns true if the hash table is empty, otherwise, false
     */
@@ -149,6 +355,60 @@ public class QuadraticProbingHashTable<K, V> {
         return capacity;
     }
 
+    /*
+    * Returns a snapshot of the probe lengths, tombstones and resizes of the hash
+    * table. It walks the probe sequence of every key, so it belongs in monitoring
+    * code rather than on the lookup path.
+    */
+    public HashTableMetrics metrics() {
+        K[] rehashKeys = this.rehashKeys;
+        HashTableMetrics metrics = new HashTableMetrics(keyCount, capacity, usedBuckets, resizeCount, resizeNanos);
+        metrics.setTombstones(usedBuckets - addProbeLengths(metrics, keys));
+        if (rehashKeys != null) {
+            addProbeLengths(metrics, rehashKeys);
+        }
+        return metrics;
+    }
+
+    /*
+    * Helper method which records the probe length of every key of the table and
+    * returns the number of keys
+    */
+    private int addProbeLengths(HashTableMetrics metrics, K[] table) {
+        final int length = table.length;
+        int count = 0;
+        for (int b = 0; b < length; b++) {
+            K key = table[b];
+            if (key == null || key == TOMBSTONE) {
+                continue;
+            }
+
+            final int offset = normalizeIndex(keyHash(key), length);
+            int probes = 1;
+            for (int i = offset, x = 1; i != b && probes < length; i = normalizeIndex(offset + probe(x++), length)) {
+                probes++;
+            }
+            metrics.addProbeLength(probes);
+            count++;
+        }
+        return count;
+    }
+
+    /*
+    * Purges the tombstones by rehashing the key-value pairs into a new table of the
+    * same capacity. Resizes already do this when most used buckets hold tombstones,
+    * calling it directly is useful after removing many keys.
+    */
+    public void compact() {
+        if (rehashKeys != null) {
+            finishRehash();
+        }
+        rebuildTable();
+        if (rehashKeys != null) {
+            finishRehash();
+        }
+    }
+
     /*
     * Clears the hash table
     */
@@ -157,6 +417,8 @@ public class QuadraticProbingHashTable<K, V> {
             keys[i] = null;
             values[i] = null;
         }
+        rehashKeys = null;
+        rehashValues = null;
         usedBuckets = keyCount = 0;
     }
 
@@ -187,12 +449,36 @@ public class QuadraticProbingHashTable<K, V> {
         if (key == null) {
             throw new IllegalArgumentException("Illegal key");
         }
-        
+
+        if (rehashKeys != null) {
+            rehashStep();
+        }
+
         if (usedBuckets >= threshold) {
             resize();
         }
 
-        final int offset = normalizeIndex(key.hashCode());
+        // During an incremental rehash the key may still be in the old table,
+        // in that case it is moved to the new table with its new value
+        if (rehashKeys != null) {
+            int i = rehashIndexOf(key);
+            if (i != -1) {
+                V oldValue = rehashValues[i];
+                rehashKeys[i] = TOMBSTONE;
+                rehashValues[i] = null;
+                keyCount--;
+                insertEntry(key, value);
+                return oldValue;
+            }
+        }
+        return insertEntry(key, value);
+    }
+
+    /*
+    * Helper method which adds the key-value pair to the current table
+    */
+    private V insertEntry(K key, V value) {
+        final int offset = normalizeIndex(keyHash(key));
 
         for (int i = offset, j = -1, x = 0;; i = normalizeIndex(offset + probe(x++))) {
             // If we have reached a deleted node
@@ -255,13 +541,19 @@ public class QuadraticProbingHashTable<K, V> {
             throw new IllegalArgumentException("Illegal key");
         }
 
-        final int offset = normalizeIndex(key.hashCode());
+        if (rehashKeys != null) {
+            rehashStep();
+        }
+
+        final int offset = normalizeIndex(keyHash(key));
 
-        for (int i = offset, j = -1, x = 1;; normalizeIndex(offset + probe(x))) {
+        for (int i = offset, j = -1, x = 1;; i = normalizeIndex(offset + probe(x++))) {
             if (keys[i] == TOMBSTONE) {
                 if (j == -1) {
                     j = i;
                 }
+            } else if (keys[i] == null) {
+                return rehashKeys != null && rehashIndexOf(key) != -1;
             } else if (keys[i].equals(key)) {
                 // Lazy deletion/relocation for faster look-ups
                 if (j != -1) {
@@ -272,8 +564,6 @@ public class QuadraticProbingHashTable<K, V> {
                     values[i] = null;
                 }
                 return true;
-            } else {
-                return false;
             }
         }
     }
@@ -287,13 +577,23 @@ public class QuadraticProbingHashTable<K, V> {
             throw new IllegalArgumentException("Illegal key");
         }
 
-        final int offset = normalizeIndex(key.hashCode());
+        if (rehashKeys != null) {
+            rehashStep();
+        }
+
+        final int offset = normalizeIndex(keyHash(key));
 
-        for (int i = offset, j = -1, x = 1;; normalizeIndex(offset + probe(x))) {
+        for (int i = offset, j = -1, x = 1;; i = normalizeIndex(offset + probe(x++))) {
             if (keys[i] == TOMBSTONE) {
                 if (j == -1) {
                     j = i;
                 }
+            } else if (keys[i] == null) {
+                if (rehashKeys != null) {
+                    int k = rehashIndexOf(key);
+                    return k == -1 ? null : rehashValues[k];
+                }
+                return null;
             } else if (keys[i].equals(key)) {
                 // Lazy deletion/relocation for faster look-ups
                 if (j != -1) {
@@ -306,8 +606,6 @@ public class QuadraticProbingHashTable<K, V> {
                 } else {
                     return values[i];
                 }
-            } else {
-                return null;
             }
         }
     }
@@ -321,15 +619,19 @@ public class QuadraticProbingHashTable<K, V> {
             throw new IllegalArgumentException("Illegal key");
         }
 
-        final int offset = normalizeIndex(key.hashCode());
+        if (rehashKeys != null) {
+            rehashStep();
+        }
+
+        final int offset = normalizeIndex(keyHash(key));
 
-        for (int i = offset, x = 1;; normalizeIndex(offset + probe(x))) {
+        for (int i = offset, x = 1;; i = normalizeIndex(offset + probe(x++))) {
             if (keys[i] == TOMBSTONE) {
                 continue;
             }
 
             if (keys[i] == null) {
-                return null;
+                return rehashKeys == null ? null : rehashRemove(key);
             }
 
             if (keys[i].equals(key)) {
@@ -342,6 +644,258 @@ public class QuadraticProbingHashTable<K, V> {
         }
     }
 
+    /*
+    * Looks up all the keys and stores the value of keys[i], or null, in out[i].
+    * The first buckets of a batch of keys are all computed and loaded before any
+    * key is compared, so the cache misses of the batch overlap instead of each
+    * lookup waiting for the previous one. Keys which are not in their first
+    * bucket continue with the usual probe.
+    */
+    public void getAll(K[] keys, V[] out) {
+        if (out.length < keys.length) {
+            throw new IllegalArgumentException("Illegal output array");
+        }
+
+        // Lookups move key-value pairs between the tables during an incremental rehash
+        if (rehashKeys != null) {
+            for (int k = 0; k < keys.length; k++) {
+                out[k] = get(keys[k]);
+            }
+            return;
+        }
+
+        final int[] offsets = new int[BATCH_SIZE];
+        final Object[] firstKeys = new Object[BATCH_SIZE];
+        final Object[] firstValues = new Object[BATCH_SIZE];
+
+        for (int start = 0; start < keys.length; start += BATCH_SIZE) {
+            final int n = Math.min(BATCH_SIZE, keys.length - start);
+
+            // Compute every first bucket of the batch and load its key and value
+            for (int b = 0; b < n; b++) {
+                K key = keys[start + b];
+                if (key == null) {
+                    throw new IllegalArgumentException("Illegal key");
+                }
+                offsets[b] = normalizeIndex(keyHash(key));
+                firstKeys[b] = this.keys[offsets[b]];
+                firstValues[b] = values[offsets[b]];
+            }
+
+            // Resolve the probes
+            for (int b = 0; b < n; b++) {
+                K key = keys[start + b];
+                Object first = firstKeys[b];
+                if (first == null) {
+                    out[start + b] = null;
+                } else if (first == key || first != TOMBSTONE && first.equals(key)) {
+                    out[start + b] = (V) firstValues[b];
+                } else {
+                    int i = indexOf(key, offsets[b]);
+                    out[start + b] = i == -1 ? null : values[i];
+                }
+            }
+        }
+    }
+
+    /*
+    * Adds or updates the key-value pairs keys[i], values[i] in order. As in getAll,
+    * the first buckets of a batch are computed and loaded before any of them is
+    * written. A key whose first bucket is empty or holds the same key is stored
+    * directly, the others go through insert.
+    */
+    public void putAll(K[] keys, V[] values) {
+        if (values.length < keys.length) {
+            throw new IllegalArgumentException("Illegal values array");
+        }
+
+        final int[] offsets = new int[BATCH_SIZE];
+        final Object[] firstKeys = new Object[BATCH_SIZE];
+
+        for (int start = 0; start < keys.length; start += BATCH_SIZE) {
+            final int n = Math.min(BATCH_SIZE, keys.length - start);
+            final K[] table = this.keys;
+
+            // Compute every first bucket of the batch and load it
+            for (int b = 0; b < n; b++) {
+                K key = keys[start + b];
+                if (key == null) {
+                    throw new IllegalArgumentException("Illegal key");
+                }
+                offsets[b] = normalizeIndex(keyHash(key));
+                firstKeys[b] = table[offsets[b]];
+            }
+
+            for (int b = 0; b < n; b++) {
+                K key = keys[start + b];
+                V value = values[start + b];
+
+                // The offsets are stale once the table was resized
+                if (this.keys != table || rehashKeys != null || usedBuckets >= threshold) {
+                    insert(key, value);
+                    continue;
+                }
+
+                // Use the key loaded by the first loop, unless an earlier key of the
+                // batch has taken the bucket since
+                int i = offsets[b];
+                Object first = firstKeys[b];
+                if (first != table[i]) {
+                    insert(key, value);
+                } else if (first == null) {
+                    table[i] = key;
+                    this.values[i] = value;
+                    usedBuckets++;
+                    keyCount++;
+                } else if (first == key || first != TOMBSTONE && first.equals(key)) {
+                    this.values[i] = value;
+                } else {
+                    insert(key, value);
+                }
+            }
+        }
+    }
+
+    /*
+    * Returns a hash table holding the key-value pairs keys[i], values[i]. The table
+    * is allocated once at the size the pairs need, so unlike a loop of put there is
+    * no threshold check and no resize. A later duplicate of a key replaces the value
+    * of the earlier one, as with put.
+    */
+    public static <K, V> QuadraticProbingHashTable<K, V> fromArrays(K[] keys, V[] values) {
+        return fromArrays(keys, values, DEFAUT_LOAD_FACTOR, HashStrategy.identity());
+    }
+
+    /*
+    * Same as fromArrays(keys, values) with the settings of the constructor. Inputs of
+    * at least PARALLEL_THRESHOLD pairs are placed by the common fork-join pool, the
+    * threads claim buckets in a temporary int[] of the capacity which holds the
+    * index of the pair in every bucket. Throws IllegalArgumentException if the
+    * pairs do not fit below the load factor in the largest capacity.
+    */
+    public static <K, V> QuadraticProbingHashTable<K, V> fromArrays(K[] keys, V[] values, double loadFactor,
+            HashStrategy<? super K> hashStrategy) {
+        if (values.length < keys.length) {
+            throw new IllegalArgumentException("Illegal values array");
+        }
+
+        if (loadFactor <= 0) {
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        }
+
+        // Enough buckets to stay below the threshold, and at least one empty bucket
+        // so every probe ends
+        long buckets = Math.max(keys.length + 1L, (long) Math.ceil(keys.length / loadFactor) + 1);
+        if (buckets > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Illegal keys array");
+        }
+        int capacity = (int) buckets;
+        QuadraticProbingHashTable<K, V> table = new QuadraticProbingHashTable<>(capacity, loadFactor, hashStrategy);
+
+        if (keys.length >= PARALLEL_THRESHOLD) {
+            table.placeParallel(keys, values);
+        } else {
+            table.place(keys, values);
+        }
+        return table;
+    }
+
+    /*
+    * Helper method which stores the key-value pairs into the empty table one after
+    * the other
+    */
+    private void place(K[] keys, V[] values) {
+        for (int k = 0; k < keys.length; k++) {
+            K key = keys[k];
+            if (key == null) {
+                throw new IllegalArgumentException("Illegal key");
+            }
+
+            final int offset = normalizeIndex(keyHash(key));
+
+            for (int i = offset, x = 1;; i = normalizeIndex(offset + probe(x++))) {
+                if (this.keys[i] == null) {
+                    this.keys[i] = key;
+                    this.values[i] = values[k];
+                    keyCount++;
+                    break;
+                }
+                if (this.keys[i].equals(key)) {
+                    this.values[i] = values[k];
+                    break;
+                }
+            }
+        }
+        usedBuckets = keyCount;
+    }
+
+    /*
+    * Helper method which stores the key-value pairs into the empty table in parallel.
+    * A bucket is claimed by a compare-and-set of its owner from 0 to the index of
+    * the pair plus 1. Equal keys follow the same probe sequence and meet at the
+    * first bucket either of them claims, where the highest index wins, so the
+    * result is the same as with place.
+    */
+    private void placeParallel(K[] keys, V[] values) {
+        final int[] owners = new int[capacity];
+        IntStream.range(0, keys.length).parallel().forEach(k -> claimBucket(owners, keys, k));
+
+        keyCount = IntStream.range(0, capacity).parallel().map(i -> {
+            int owner = owners[i] - 1;
+            if (owner == -1) {
+                return 0;
+            }
+            this.keys[i] = keys[owner];
+            this.values[i] = values[owner];
+            return 1;
+        }).sum();
+        usedBuckets = keyCount;
+    }
+
+    /*
+    * Helper method which claims a bucket for keys[k] in owners
+    */
+    private void claimBucket(int[] owners, K[] keys, int k) {
+        K key = keys[k];
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+
+        final int offset = normalizeIndex(keyHash(key));
+
+        for (int i = offset, x = 1;; i = normalizeIndex(offset + probe(x++))) {
+            int owner = (int) OWNERS.getVolatile(owners, i);
+            if (owner == 0) {
+                if (OWNERS.compareAndSet(owners, i, 0, k + 1)) {
+                    return;
+                }
+                owner = (int) OWNERS.getVolatile(owners, i);
+            }
+
+            if (keys[owner - 1].equals(key)) {
+                while (owner < k + 1 && !OWNERS.compareAndSet(owners, i, owner, k + 1)) {
+                    owner = (int) OWNERS.getVolatile(owners, i);
+                }
+                return;
+            }
+        }
+    }
+
+    /*
+    * Returns the index of the key by probing from its first bucket, or -1 if it is
+    * not present. Unlike get, no key-value pair is relocated.
+    */
+    private int indexOf(K key, int offset) {
+        for (int i = offset, x = 1;; i = normalizeIndex(offset + probe(x++))) {
+            if (keys[i] == null) {
+                return -1;
+            }
+            if (keys[i] != TOMBSTONE && keys[i].equals(key)) {
+                return i;
+            }
+        }
+    }
+
     /* 
     * Returns the list of keys in the hash table
     */
@@ -351,6 +905,10 @@ public class QuadraticProbingHashTable<K, V> {
             if (keys[i] != null && keys[i] != TOMBSTONE)
                 keyList.add(keys[i]);
         }
+        for (int i = 0; rehashKeys != null && i < rehashKeys.length; i++) {
+            if (rehashKeys[i] != null && rehashKeys[i] != TOMBSTONE)
+                keyList.add(rehashKeys[i]);
+        }
         return keyList;
     }
 
@@ -363,6 +921,10 @@ public class QuadraticProbingHashTable<K, V> {
             if (keys[i] != null && keys[i] != TOMBSTONE)
                 valueList.add(values[i]);
         }
+        for (int i = 0; rehashKeys != null && i < rehashKeys.length; i++) {
+            if (rehashKeys[i] != null && rehashKeys[i] != TOMBSTONE)
+                valueList.add(rehashValues[i]);
+        }
         return valueList;
     }
 
@@ -379,6 +941,11 @@ public class QuadraticProbingHashTable<K, V> {
                 sb.append(keys[i] + " : " + values[i] + ", ");
             }
         }
+        for (int i = 0; rehashKeys != null && i < rehashKeys.length; i++) {
+            if (rehashKeys[i] != null && rehashKeys[i] != TOMBSTONE) {
+                sb.append(rehashKeys[i] + " : " + rehashValues[i] + ", ");
+            }
+        }
         sb.append("}");
         return sb.toString();
     }
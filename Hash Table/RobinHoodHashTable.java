@@ -0,0 +1,326 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+* Open addressing hash table using Robin Hood hashing.
+*
+* Every bucket remembers how far its key-value pair is from the bucket it hashed
+* to. On insertion a key which has travelled further takes the bucket from a key
+* which is closer to home, which keeps the probe lengths short and even. Because
+* of that ordering a lookup can stop as soon as it reaches a key that is closer
+* to home than the key being searched.
+*
+* Removal uses backward shift: the following keys of the same cluster are moved
+* one bucket back, so no TOMBSTONE is ever written and the probe lengths do not
+* grow with the number of deletions.
+*/
+@SuppressWarnings("unchecked")
+public class RobinHoodHashTable<K, V> {
+    private static final int DEFAULT_CAPACITY = 4;
+    private static final double DEFAUT_LOAD_FACTOR = 0.75;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    // Changing load factor
+    private double loadFactor;
+
+    // Capacity is the number of key-value pairs the hash table can hold, always a power of 2
+    private int capacity;
+
+    // capacity - 1, used to compute the bucket index
+    private int mask;
+
+    // Threshold tells us to resize when it reaches a certain value
+    private int threshold;
+
+    // The number of unique key-value pair in the hash table
+    private int keyCount;
+
+    // Array of keys of type K
+    private K[] keys;
+    // Array of values of type V
+    private V[] values;
+
+    // Distance of each key from its first bucket plus one, 0 means the bucket is empty
+    private int[] distances;
+
+    public RobinHoodHashTable() {
+        this(DEFAULT_CAPACITY, DEFAUT_LOAD_FACTOR);
+    }
+
+    public RobinHoodHashTable(int capacity) {
+        this(capacity, DEFAUT_LOAD_FACTOR);
+    }
+
+    public RobinHoodHashTable(int capacity, double loadFactor) {
+        if (capacity < 0 || capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Illegal capacity");
+        }
+
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        }
+
+        this.loadFactor = loadFactor;
+        allocate(Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, capacity) - 1) << 1);
+    }
+
+    /*
+    * Helper method which creates empty arrays for the specified capacity
+    */
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        mask = capacity - 1;
+        threshold = (int) (capacity * loadFactor);
+        keys = (K[]) new Object[capacity];
+        values = (V[]) new Object[capacity];
+        distances = new int[capacity];
+    }
+
+    /*
+    * Returns the index of the first bucket for the key
+    */
+    private int hashIndex(K key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /*
+    * Helper method to resize the hash table with new capacity on reaching a threshold
+    */
+    private void resize() {
+        if (capacity == MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Hash table is full");
+        }
+
+        K[] oldKeys = keys;
+        V[] oldValues = values;
+        int[] oldDistances = distances;
+
+        allocate(capacity << 1);
+        keyCount = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldDistances[i] != 0) {
+                insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /*
+    * Returns true if the hash table is empty, otherwise, false
+    */
+    public boolean isEmpty() {
+        return keyCount == 0;
+    }
+
+    /*
+    * Returns the size of the hash table
+    */
+    public int size() {
+        return keyCount;
+    }
+
+    /*
+    * Returns the capacity of the hash table
+    */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /*
+    * Clears the hash table
+    */
+    public void clear() {
+        for (int i = 0; i < capacity; i++) {
+            keys[i] = null;
+            values[i] = null;
+            distances[i] = 0;
+        }
+        keyCount = 0;
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V put(K key, V value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V add(K key, V value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V insert(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+
+        if (keyCount >= threshold) {
+            resize();
+        }
+
+        int i = hashIndex(key);
+        int distance = 1;
+
+        // Look for the key until we reach an empty bucket or a key closer to home
+        while (distances[i] >= distance) {
+            if (distances[i] == distance && keys[i].equals(key)) {
+                V oldValue = values[i];
+                values[i] = value;
+                return oldValue;
+            }
+            i = (i + 1) & mask;
+            distance++;
+        }
+
+        // The key is not present, so insert it here and carry the displaced
+        // key-value pairs further down the cluster
+        K k = key;
+        V v = value;
+        while (distances[i] != 0) {
+            if (distances[i] < distance) {
+                K displacedKey = keys[i];
+                V displacedValue = values[i];
+                int displacedDistance = distances[i];
+
+                keys[i] = k;
+                values[i] = v;
+                distances[i] = distance;
+
+                k = displacedKey;
+                v = displacedValue;
+                distance = displacedDistance;
+            }
+            i = (i + 1) & mask;
+            distance++;
+        }
+
+        keys[i] = k;
+        values[i] = v;
+        distances[i] = distance;
+        keyCount++;
+        return null;
+    }
+
+    /*
+    * Returns the index of the bucket holding the key, or -1 if it is not present
+    */
+    private int indexOf(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+
+        int i = hashIndex(key);
+        for (int distance = 1; distances[i] >= distance; distance++) {
+            if (distances[i] == distance && keys[i].equals(key)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean containsKey(K key) {
+        return hasKey(key);
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean hasKey(K key) {
+        return indexOf(key) != -1;
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns null.
+    */
+    public V get(K key) {
+        int i = indexOf(key);
+        return i == -1 ? null : values[i];
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns null.
+    */
+    public V remove(K key) {
+        int i = indexOf(key);
+        if (i == -1) {
+            return null;
+        }
+
+        V oldValue = values[i];
+
+        // Shift the rest of the cluster one bucket back until we reach an empty
+        // bucket or a key which already sits in its first bucket
+        for (int next = (i + 1) & mask; distances[next] > 1; next = (next + 1) & mask) {
+            keys[i] = keys[next];
+            values[i] = values[next];
+            distances[i] = distances[next] - 1;
+            i = next;
+        }
+
+        keys[i] = null;
+        values[i] = null;
+        distances[i] = 0;
+        keyCount--;
+        return oldValue;
+    }
+
+    /*
+    * Returns the list of keys in the hash table
+    */
+    public List<K> keys() {
+        List<K> keyList = new ArrayList<>(keyCount);
+        for (int i = 0; i < capacity; i++) {
+            if (distances[i] != 0)
+                keyList.add(keys[i]);
+        }
+        return keyList;
+    }
+
+    /*
+    * Returns the list of values in the hash table
+    */
+    public List<V> values() {
+        List<V> valueList = new ArrayList<>(keyCount);
+        for (int i = 0; i < capacity; i++) {
+            if (distances[i] != 0)
+                valueList.add(values[i]);
+        }
+        return valueList;
+    }
+
+    /*
+    * Returns the String representation of the hash table
+    */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+
+        for (int i = 0; i < capacity; i++) {
+            if (distances[i] != 0) {
+                sb.append(keys[i] + " : " + values[i] + ", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,377 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+* Open addressing hash table with a Swiss table layout.
+*
+* Next to the keys and values there is one control byte per bucket. A full
+* bucket stores the low 7 bits of the key's hash in it, an empty or deleted
+* bucket stores a marker with the high bit set. Buckets are probed in groups of
+* 8: the 8 control bytes of a group are read as a single long and compared with
+* the hash bits of the searched key all at once (SWAR, SIMD within a register).
+* equals is only called on the keys whose 7 hash bits matched, so a lookup for a
+* missing key almost never touches the keys array.
+*/
+@SuppressWarnings("unchecked")
+public class SwissHashTable<K, V> {
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final double DEFAUT_LOAD_FACTOR = 0.75;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    // Number of buckets matched at once
+    private static final int GROUP_WIDTH = 8;
+
+    // Control byte of a bucket which has never been used
+    private static final byte EMPTY = (byte) 0x80;
+    // Control byte of a bucket whose key-value pair was removed
+    private static final byte DELETED = (byte) 0xFE;
+
+    // Lowest and highest bit of every byte in a group
+    private static final long LSBS = 0x0101010101010101L;
+    private static final long MSBS = 0x8080808080808080L;
+
+    // Reads 8 control bytes as one long
+    private static final VarHandle GROUP = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    // Changing load factor
+    private double loadFactor;
+
+    // Capacity is the number of key-value pairs the hash table can hold, always a power of 2
+    private int capacity;
+
+    // Number of groups - 1, used to compute the group index
+    private int groupMask;
+
+    // Threshold tells us to resize when it reaches a certain value
+    private int threshold;
+
+    // The number of unique key-value pair in the hash table
+    private int keyCount;
+
+    // The number of buckets used by deleted and the key-value pairs
+    private int usedBuckets;
+
+    // Control byte of each bucket
+    private byte[] control;
+
+    // Array of keys of type K
+    private K[] keys;
+    // Array of values of type V
+    private V[] values;
+
+    public SwissHashTable() {
+        this(DEFAULT_CAPACITY, DEFAUT_LOAD_FACTOR);
+    }
+
+    public SwissHashTable(int capacity) {
+        this(capacity, DEFAUT_LOAD_FACTOR);
+    }
+
+    public SwissHashTable(int capacity, double loadFactor) {
+        if (capacity < 0 || capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Illegal capacity");
+        }
+
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        }
+
+        this.loadFactor = loadFactor;
+        allocate(Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, capacity) - 1) << 1);
+    }
+
+    /*
+    * Helper method which creates empty arrays for the specified capacity
+    */
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        groupMask = capacity / GROUP_WIDTH - 1;
+        threshold = (int) (capacity * loadFactor);
+        control = new byte[capacity];
+        Arrays.fill(control, EMPTY);
+        keys = (K[]) new Object[capacity];
+        values = (V[]) new Object[capacity];
+    }
+
+    /*
+    * Returns the mixed hash of the key. The low 7 bits go to the control byte,
+    * the rest selects the first group.
+    */
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private long group(int g) {
+        return (long) GROUP.get(control, g * GROUP_WIDTH);
+    }
+
+    /*
+    * Returns a mask with the high bit set for every byte of the group equal to h2.
+    * This may also flag a byte directly above a matching one, so every candidate
+    * must still be compared with equals. Empty and deleted bytes never match.
+    */
+    private static long matchHash(long group, int h2) {
+        long x = group ^ (LSBS * h2);
+        return (x - LSBS) & ~x & MSBS;
+    }
+
+    /*
+    * Returns a mask with the high bit set for every EMPTY byte of the group
+    */
+    private static long matchEmpty(long group) {
+        return group & ~(group << 6) & MSBS;
+    }
+
+    /*
+    * Returns a mask with the high bit set for every EMPTY or DELETED byte of the group
+    */
+    private static long matchFree(long group) {
+        return group & MSBS;
+    }
+
+    /*
+    * Returns the index of the bucket pointed by the lowest bit of the mask
+    */
+    private static int bucket(int g, long mask) {
+        return g * GROUP_WIDTH + (Long.numberOfTrailingZeros(mask) >>> 3);
+    }
+
+    /*
+    * Helper method to resize the hash table with new capacity on reaching a threshold
+    */
+    private void resize() {
+        if (capacity == MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Hash table is full");
+        }
+
+        byte[] oldControl = control;
+        K[] oldKeys = keys;
+        V[] oldValues = values;
+
+        allocate(capacity << 1);
+        keyCount = usedBuckets = 0;
+
+        for (int i = 0; i < oldControl.length; i++) {
+            if (oldControl[i] >= 0) {
+                insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /*
+    * Returns true if the hash table is empty, otherwise, false
+    */
+    public boolean isEmpty() {
+        return keyCount == 0;
+    }
+
+    /*
+    * Returns the size of the hash table
+    */
+    public int size() {
+        return keyCount;
+    }
+
+    /*
+    * Returns the capacity of the hash table
+    */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /*
+    * Clears the hash table
+    */
+    public void clear() {
+        Arrays.fill(control, EMPTY);
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        usedBuckets = keyCount = 0;
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V put(K key, V value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V add(K key, V value) {
+        return insert(key, value);
+    }
+
+    /*
+    * Returns the old value and modifies the old value with the specfied value if
+    * the key is already present Otherwise, returns null and adds the new key-value
+    * if the key is not present.
+    */
+    public V insert(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+
+        if (usedBuckets >= threshold) {
+            resize();
+        }
+
+        final int h = hash(key);
+        int i = find(key, h);
+        if (i != -1) {
+            V oldValue = values[i];
+            values[i] = value;
+            return oldValue;
+        }
+
+        // Take the first empty or deleted bucket of the probe sequence
+        for (int g = (h >>> 7) & groupMask, x = 1;; g = (g + x++) & groupMask) {
+            long free = matchFree(group(g));
+            if (free != 0) {
+                i = bucket(g, free);
+                if (control[i] == EMPTY) {
+                    usedBuckets++;
+                }
+                control[i] = (byte) (h & 0x7F);
+                keys[i] = key;
+                values[i] = value;
+                keyCount++;
+                return null;
+            }
+        }
+    }
+
+    /*
+    * Returns the index of the bucket holding the key, or -1 if it is not present.
+    * Groups are probed with triangular numbers, which visit every group of a
+    * power of 2 table.
+    */
+    private int find(Object key, int h) {
+        final int h2 = h & 0x7F;
+
+        for (int g = (h >>> 7) & groupMask, x = 1;; g = (g + x++) & groupMask) {
+            long group = group(g);
+            for (long match = matchHash(group, h2); match != 0; match &= match - 1) {
+                int i = bucket(g, match);
+                if (key.equals(keys[i])) {
+                    return i;
+                }
+            }
+            // A probe sequence never continues past a group with an empty bucket
+            if (matchEmpty(group) != 0) {
+                return -1;
+            }
+        }
+    }
+
+    /*
+    * Returns the index of the bucket holding the key, or -1 if it is not present
+    */
+    private int indexOf(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Illegal key");
+        }
+        return find(key, hash(key));
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean containsKey(K key) {
+        return hasKey(key);
+    }
+
+    /*
+    * Returns true if the hash table is contains the specified key, otherwise, false
+    */
+    public boolean hasKey(K key) {
+        return indexOf(key) != -1;
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns null.
+    */
+    public V get(K key) {
+        int i = indexOf(key);
+        return i == -1 ? null : values[i];
+    }
+
+    /*
+    * Returns the value against the specfied key if
+    * the key is found. Otherwise, returns null.
+    */
+    public V remove(K key) {
+        int i = indexOf(key);
+        if (i == -1) {
+            return null;
+        }
+
+        V oldValue = values[i];
+        keys[i] = null;
+        values[i] = null;
+        keyCount--;
+
+        // If the group still has an empty bucket, no probe sequence ever went past
+        // it, so the bucket can become empty again instead of deleted
+        if (matchEmpty(group(i / GROUP_WIDTH)) != 0) {
+            control[i] = EMPTY;
+            usedBuckets--;
+        } else {
+            control[i] = DELETED;
+        }
+        return oldValue;
+    }
+
+    /*
+    * Returns the list of keys in the hash table
+    */
+    public List<K> keys() {
+        List<K> keyList = new ArrayList<>(keyCount);
+        for (int i = 0; i < capacity; i++) {
+            if (control[i] >= 0)
+                keyList.add(keys[i]);
+        }
+        return keyList;
+    }
+
+    /*
+    * Returns the list of values in the hash table
+    */
+    public List<V> values() {
+        List<V> valueList = new ArrayList<>(keyCount);
+        for (int i = 0; i < capacity; i++) {
+            if (control[i] >= 0)
+                valueList.add(values[i]);
+        }
+        return valueList;
+    }
+
+    /*
+    * Returns the String representation of the hash table
+    */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+
+        for (int i = 0; i < capacity; i++) {
+            if (control[i] >= 0) {
+                sb.append(keys[i] + " : " + values[i] + ", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
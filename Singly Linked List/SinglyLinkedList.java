@@ -1,5 +1,10 @@
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class SinglyLinkedList<T> implements Iterable<T> {
     // The head of the List
@@ -87,6 +92,7 @@ public class SinglyLinkedList<T> implements Iterable<T> {
                     Node<T> node = new Node<>(data);
                     node.next = current;
                     previous.next = node;
+                    size++;
                     break;
                 } else {
                     // Store the previous Node
@@ -346,4 +352,95 @@ public class SinglyLinkedList<T> implements Iterable<T> {
 
         };
     }
-}
\ No newline at end of file
+
+    // Returns a Spliterator over the elements in order. A list cannot be split in
+    // the middle without walking to it, so trySplit hands out the next batch of
+    // elements copied into an array, each batch BATCH_UNIT elements bigger than
+    // the previous one.
+    @Override
+    public Spliterator<T> spliterator() {
+        return new NodeSpliterator<>(head, size);
+    }
+
+    // Returns a sequential Stream over the elements
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    // Returns a parallel Stream over the elements
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    // Spliterator walking the Nodes from a given Node
+    private static final class NodeSpliterator<T> implements Spliterator<T> {
+        // Growth of the batches handed out by trySplit
+        private static final int BATCH_UNIT = 1 << 10;
+        // Largest batch handed out by trySplit
+        private static final int MAX_BATCH = 1 << 25;
+
+        // The next Node to visit
+        private Node<T> current;
+        // Number of elements left to visit
+        private int remaining;
+        // Size of the last batch
+        private int batch = 0;
+
+        NodeSpliterator(Node<T> current, int remaining) {
+            this.current = current;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (remaining <= 1 || current == null) {
+                return null;
+            }
+            int n = Math.min(Math.min(batch + BATCH_UNIT, MAX_BATCH), remaining);
+            Object[] elements = new Object[n];
+            int count = 0;
+            // Copy the next n elements into the batch
+            while (count < n && current != null) {
+                elements[count++] = current.data;
+                current = current.next;
+            }
+            batch = count;
+            remaining -= count;
+            return Spliterators.spliterator(elements, 0, count, Spliterator.ORDERED);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (remaining <= 0 || current == null) {
+                return false;
+            }
+            T data = current.data;
+            current = current.next;
+            remaining--;
+            action.accept(data);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Node<T> node = current;
+            int left = remaining;
+            // Consume everything before calling the action, as ArrayList does
+            current = null;
+            remaining = 0;
+            for (; left > 0 && node != null; left--, node = node.next) {
+                action.accept(node.data);
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+}
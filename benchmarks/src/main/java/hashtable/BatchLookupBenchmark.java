@@ -0,0 +1,82 @@
+package hashtable;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+* Time to look up a batch of random keys in LinearProbingHashTable, one get at a
+* time versus a single getAll. Tables much larger than the CPU caches show the
+* difference best, since getAll lets the cache misses of a batch overlap.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class BatchLookupBenchmark {
+    // Number of pre-generated batches, a power of two so the cursor can be masked
+    private static final int BATCHES = 1 << 8;
+
+    @Param({ "100000", "10000000" })
+    public int keyCount;
+
+    @Param({ "256" })
+    public int batchSize;
+
+    @Param({ "false", "true" })
+    public boolean powerOfTwo;
+
+    private LinearProbingHashTable<Integer, Integer> table;
+    private Integer[][] batches;
+    private Integer[] out;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        table = new LinearProbingHashTable<>(0, 0.75, powerOfTwo);
+
+        Integer[] keys = new Integer[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = random.nextInt();
+            table.put(keys[i], keys[i]);
+        }
+
+        batches = new Integer[BATCHES][batchSize];
+        for (Integer[] batch : batches) {
+            for (int i = 0; i < batchSize; i++) {
+                batch[i] = keys[random.nextInt(keyCount)];
+            }
+        }
+        out = new Integer[batchSize];
+    }
+
+    @Benchmark
+    public Integer[] get() {
+        Integer[] batch = batches[cursor++ & (BATCHES - 1)];
+        for (int i = 0; i < batch.length; i++) {
+            out[i] = table.get(batch[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public Integer[] getAll() {
+        table.getAll(batches[cursor++ & (BATCHES - 1)], out);
+        return out;
+    }
+}
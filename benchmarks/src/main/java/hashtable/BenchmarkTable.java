@@ -0,0 +1,154 @@
+package hashtable;
+
+import java.util.HashMap;
+
+/*
+* Common view over the hash tables under test so that a single benchmark body
+* can drive every implementation. Each benchmark fork only ever sees one
+* implementation, so the calls through this interface stay monomorphic.
+*/
+public interface BenchmarkTable {
+    Object put(Object key, Object value);
+
+    Object get(Object key);
+
+    Object remove(Object key);
+
+    int size();
+
+    /*
+    * Converts a raw Integer or String key into the key type the table expects.
+    * Called once per key during setup, never inside a measured method.
+    */
+    default Object key(Object raw) {
+        return raw;
+    }
+
+    enum Kind {
+        LINEAR_PROBING {
+            @Override
+            BenchmarkTable create(double loadFactor) {
+                return linearProbing(new LinearProbingHashTable<>(0, loadFactor));
+            }
+        },
+        LINEAR_PROBING_POW2 {
+            @Override
+            BenchmarkTable create(double loadFactor) {
+                return linearProbing(new LinearProbingHashTable<>(0, loadFactor, true));
+            }
+        },
+        QUADRATIC_PROBING {
+            @Override
+            BenchmarkTable create(double loadFactor) {
+                return quadraticProbing(new QuadraticProbingHashTable<>(0, loadFactor));
+            }
+        },
+        QUADRATIC_PROBING_POW2 {
+            @Override
+            BenchmarkTable create(double loadFactor) {
+                return quadraticProbing(new QuadraticProbingHashTable<>(0, loadFactor, true));
+            }
+        },
+        DOUBLE_HASHING {
+            @Override
+            BenchmarkTable create(double loadFactor) {
+                return doubleHashing(new DoubleHashing<>(0, loadFactor));
+            }
+        },
+        DOUBLE_HASHING_POW2 {
+            @Override
+            BenchmarkTable create(double loadFactor) {
+                return doubleHashing(new DoubleHashing<>(0, loadFactor, true));
+            }
+        },
+        ROBIN_HOOD {
+            @Override
+            BenchmarkTable create(double loadFactor) {
+                RobinHoodHashTable<Object, Object> table = new RobinHoodHashTable<>(0, loadFactor);
+                return new BenchmarkTable() {
+                    public Object put(Object key, Object value) { return table.put(key, value); }
+                    public Object get(Object key) { return table.get(key); }
+                    public Object remove(Object key) { return table.remove(key); }
+                    public int size() { return table.size(); }
+                };
+            }
+        },
+        SWISS {
+            @Override
+            BenchmarkTable create(double loadFactor) {
+                SwissHashTable<Object, Object> table = new SwissHashTable<>(0, loadFactor);
+                return new BenchmarkTable() {
+                    public Object put(Object key, Object value) { return table.put(key, value); }
+                    public Object get(Object key) { return table.get(key); }
+                    public Object remove(Object key) { return table.remove(key); }
+                    public int size() { return table.size(); }
+                };
+            }
+        },
+        CUCKOO {
+            @Override
+            BenchmarkTable create(double loadFactor) {
+                CuckooHashTable<Object, Object> table = new CuckooHashTable<>(0, loadFactor);
+                return new BenchmarkTable() {
+                    public Object put(Object key, Object value) { return table.put(key, value); }
+                    public Object get(Object key) { return table.get(key); }
+                    public Object remove(Object key) { return table.remove(key); }
+                    public int size() { return table.size(); }
+                };
+            }
+        },
+        SEPARATE_CHAINING {
+            @Override
+            BenchmarkTable create(double loadFactor) {
+                HashTableSeparateChaining<Object, Object> table = new HashTableSeparateChaining<>(0, loadFactor);
+                return new BenchmarkTable() {
+                    public Object put(Object key, Object value) { return table.put(key, value); }
+                    public Object get(Object key) { return table.get(key); }
+                    public Object remove(Object key) { return table.remove(key); }
+                    public int size() { return table.size(); }
+                };
+            }
+        },
+        JAVA_UTIL_HASHMAP {
+            @Override
+            BenchmarkTable create(double loadFactor) {
+                HashMap<Object, Object> table = new HashMap<>(16, (float) loadFactor);
+                return new BenchmarkTable() {
+                    public Object put(Object key, Object value) { return table.put(key, value); }
+                    public Object get(Object key) { return table.get(key); }
+                    public Object remove(Object key) { return table.remove(key); }
+                    public int size() { return table.size(); }
+                };
+            }
+        };
+
+        abstract BenchmarkTable create(double loadFactor);
+    }
+
+    private static BenchmarkTable linearProbing(LinearProbingHashTable<Object, Object> table) {
+        return new BenchmarkTable() {
+            public Object put(Object key, Object value) { return table.put(key, value); }
+            public Object get(Object key) { return table.get(key); }
+            public Object remove(Object key) { return table.remove(key); }
+            public int size() { return table.size(); }
+        };
+    }
+
+    private static BenchmarkTable quadraticProbing(QuadraticProbingHashTable<Object, Object> table) {
+        return new BenchmarkTable() {
+            public Object put(Object key, Object value) { return table.put(key, value); }
+            public Object get(Object key) { return table.get(key); }
+            public Object remove(Object key) { return table.remove(key); }
+            public int size() { return table.size(); }
+        };
+    }
+
+    private static BenchmarkTable doubleHashing(DoubleHashing<Object, Object> table) {
+        return new BenchmarkTable() {
+            public Object put(Object key, Object value) { return table.put(key, value); }
+            public Object get(Object key) { return table.get(key); }
+            public Object remove(Object key) { return table.remove(key); }
+            public int size() { return table.size(); }
+        };
+    }
+}
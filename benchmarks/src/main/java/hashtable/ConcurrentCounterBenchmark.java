@@ -0,0 +1,73 @@
+package hashtable;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+* Throughput of counters shared by all benchmark threads: ConcurrentLongLongHashTable
+* against ConcurrentHashMap<Long, Long>, which boxes every key and every new count.
+*
+* Thread count defaults to the number of processors, change it with -t.
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@Threads(Threads.MAX)
+public class ConcurrentCounterBenchmark {
+    private static final int INCREMENTS = 1 << 16;
+
+    @Param({ "1000", "1000000" })
+    public int keyCount;
+
+    private ConcurrentLongLongHashTable table;
+    private ConcurrentHashMap<Long, Long> map;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        table = new ConcurrentLongLongHashTable();
+        map = new ConcurrentHashMap<>();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        long[] keys;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp(ConcurrentCounterBenchmark benchmark) {
+            SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+            keys = new long[INCREMENTS];
+            for (int i = 0; i < INCREMENTS; i++) {
+                keys[i] = random.nextInt(benchmark.keyCount);
+            }
+        }
+    }
+
+    @Benchmark
+    public long concurrentLongLong(ThreadState state) {
+        return table.addAndGet(state.keys[state.cursor++ & (INCREMENTS - 1)], 1);
+    }
+
+    @Benchmark
+    public Long concurrentHashMap(ThreadState state) {
+        return map.merge(state.keys[state.cursor++ & (INCREMENTS - 1)], 1L, Long::sum);
+    }
+}
@@ -0,0 +1,120 @@
+package hashtable;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+* Mixed get/put throughput of one table shared by all benchmark threads.
+* Compares ConcurrentHashTableSeparateChaining with HashTableSeparateChaining
+* behind a global lock and with java.util.concurrent.ConcurrentHashMap.
+*
+* Thread count defaults to the number of processors, change it with -t.
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@Threads(Threads.MAX)
+public class ConcurrentHashTableBenchmark {
+    private static final int LOOKUPS = 1 << 16;
+
+    @Param({ "CONCURRENT_SEPARATE_CHAINING", "SYNCHRONIZED_SEPARATE_CHAINING", "CONCURRENT_HASHMAP" })
+    public String impl;
+
+    @Param({ "1000000" })
+    public int keyCount;
+
+    // Percentage of operations which are gets, the rest are puts
+    @Param({ "90", "50" })
+    public int readPercent;
+
+    private SharedTable table;
+    private Integer[] keys;
+
+    interface SharedTable {
+        Object get(Integer key);
+
+        Object put(Integer key, Object value);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (impl) {
+        case "CONCURRENT_SEPARATE_CHAINING": {
+            ConcurrentHashTableSeparateChaining<Integer, Object> t = new ConcurrentHashTableSeparateChaining<>();
+            table = new SharedTable() {
+                public Object get(Integer key) { return t.get(key); }
+                public Object put(Integer key, Object value) { return t.put(key, value); }
+            };
+            break;
+        }
+        case "SYNCHRONIZED_SEPARATE_CHAINING": {
+            HashTableSeparateChaining<Integer, Object> t = new HashTableSeparateChaining<>();
+            table = new SharedTable() {
+                public synchronized Object get(Integer key) { return t.get(key); }
+                public synchronized Object put(Integer key, Object value) { return t.put(key, value); }
+            };
+            break;
+        }
+        case "CONCURRENT_HASHMAP": {
+            ConcurrentHashMap<Integer, Object> t = new ConcurrentHashMap<>();
+            table = new SharedTable() {
+                public Object get(Integer key) { return t.get(key); }
+                public Object put(Integer key, Object value) { return t.put(key, value); }
+            };
+            break;
+        }
+        default:
+            throw new IllegalArgumentException(impl);
+        }
+
+        SplittableRandom random = new SplittableRandom(42);
+        keys = new Integer[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = random.nextInt();
+            table.put(keys[i], keys[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int[] indices;
+        boolean[] reads;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp(ConcurrentHashTableBenchmark benchmark) {
+            SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+            indices = new int[LOOKUPS];
+            reads = new boolean[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                indices[i] = random.nextInt(benchmark.keyCount);
+                reads[i] = random.nextInt(100) < benchmark.readPercent;
+            }
+        }
+    }
+
+    @Benchmark
+    public Object mixed(ThreadState state) {
+        int i = state.cursor++ & (LOOKUPS - 1);
+        Integer key = keys[state.indices[i]];
+        return state.reads[i] ? table.get(key) : table.put(key, key);
+    }
+}
@@ -0,0 +1,146 @@
+package hashtable;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+* put/get/remove throughput and latency percentiles for the hash tables in
+* "Hash Table", with java.util.HashMap as the baseline.
+*
+* The table is filled with keyCount keys once per trial and kept at that size,
+* so the load factor stays stable for the whole run. A single put or remove
+* takes too little time to be undone by an Invocation level setup without the
+* setup dominating the measurement, so the mutating benchmarks measure
+* operations which leave the table as they found it: update replaces the value
+* of a present key and putRemove inserts an absent key and removes it again,
+* which also exercises tombstones in the open-addressing tables.
+*
+* hitRatio only affects get and is a parameter of its own state, so it does
+* not multiply the runs of the other benchmarks. Run a subset with, for example:
+*   java -jar benchmarks/target/benchmarks.jar HashTableBenchmark.get -p keyType=String
+*/
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class HashTableBenchmark {
+    // Number of pre-generated lookup keys, a power of two so the cursor can be masked
+    private static final int LOOKUPS = 1 << 16;
+    private static final Object VALUE = new Object();
+
+    @Param({ "LINEAR_PROBING", "LINEAR_PROBING_POW2", "QUADRATIC_PROBING", "QUADRATIC_PROBING_POW2",
+            "DOUBLE_HASHING", "DOUBLE_HASHING_POW2", "ROBIN_HOOD", "SWISS", "CUCKOO",
+            "SEPARATE_CHAINING", "JAVA_UTIL_HASHMAP" })
+    public BenchmarkTable.Kind impl;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int keyCount;
+
+    @Param({ "0.5", "0.75", "0.9" })
+    public double loadFactor;
+
+    @Param({ "Integer", "String" })
+    public String keyType;
+
+    BenchmarkTable table;
+
+    // Keys present in the table
+    Object[] present;
+    // Keys guaranteed to be absent from the table
+    Object[] absent;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        table = impl.create(loadFactor);
+
+        Object[] raw = distinctKeys(random, 2 * keyCount);
+        present = new Object[keyCount];
+        absent = new Object[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            present[i] = table.key(raw[i]);
+            absent[i] = table.key(raw[keyCount + i]);
+        }
+
+        for (Object key : present) {
+            table.put(key, VALUE);
+        }
+    }
+
+    /*
+    * Helper method which generates count distinct keys of the configured type
+    */
+    private Object[] distinctKeys(SplittableRandom random, int count) {
+        Set<Object> seen = new HashSet<>(count * 2);
+        Object[] keys = new Object[count];
+        for (int i = 0; i < count;) {
+            Object key = "Integer".equals(keyType)
+                    ? (Object) random.nextInt()
+                    : "key-" + Long.toHexString(random.nextLong());
+            if (seen.add(key)) {
+                keys[i++] = key;
+            }
+        }
+        return keys;
+    }
+
+    @State(Scope.Thread)
+    public static class GetState {
+        @Param({ "1.0", "0.5", "0.0" })
+        public double hitRatio;
+
+        Object[] lookups;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp(HashTableBenchmark benchmark) {
+            SplittableRandom random = new SplittableRandom(7);
+            lookups = new Object[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                Object[] source = random.nextDouble() < hitRatio ? benchmark.present : benchmark.absent;
+                lookups[i] = source[random.nextInt(benchmark.keyCount)];
+            }
+        }
+    }
+
+    // Positions of update and putRemove in present and absent
+    private int updateCursor;
+    private int putRemoveCursor;
+
+    @Benchmark
+    public Object get(GetState state) {
+        return table.get(state.lookups[state.cursor++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    public Object update() {
+        Object key = present[updateCursor];
+        updateCursor = updateCursor + 1 == present.length ? 0 : updateCursor + 1;
+        return table.put(key, VALUE);
+    }
+
+    @Benchmark
+    public Object putRemove() {
+        Object key = absent[putRemoveCursor];
+        putRemoveCursor = putRemoveCursor + 1 == absent.length ? 0 : putRemoveCursor + 1;
+        table.put(key, VALUE);
+        return table.remove(key);
+    }
+}